@@ -0,0 +1,71 @@
+package com.codentt.auth.benchmark;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify cost of the algorithms supported by jwt.algorithm, using the same
+ * claim set AuthService.login puts in access tokens.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class JwtSigningBenchmark {
+    
+    @Param({"HS256", "RS256", "ES256", "EdDSA"})
+    public String algorithm;
+    
+    private Key signingKey;
+    private JwtParser parser;
+    private String token;
+    
+    @Setup
+    public void setup() {
+        switch (algorithm) {
+            case "HS256" -> {
+                signingKey = Keys.hmacShaKeyFor("benchmark-secret-key-that-is-at-least-32-bytes-long".getBytes(StandardCharsets.UTF_8));
+                parser = Jwts.parser().verifyWith((SecretKey) signingKey).build();
+            }
+            case "RS256" -> useKeyPair(Jwts.SIG.RS256.keyPair().build());
+            case "ES256" -> useKeyPair(Jwts.SIG.ES256.keyPair().build());
+            case "EdDSA" -> useKeyPair(Jwks.CRV.Ed25519.keyPair().build());
+            default -> throw new IllegalArgumentException(algorithm);
+        }
+        token = sign();
+    }
+    
+    private void useKeyPair(KeyPair keyPair) {
+        signingKey = keyPair.getPrivate();
+        parser = Jwts.parser().verifyWith(keyPair.getPublic()).build();
+    }
+    
+    @Benchmark
+    public String sign() {
+        return Jwts.builder()
+                .claims(Map.of("userId", 42L, "username", "benchmark", "roles", List.of("USER")))
+                .subject("benchmark")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 86400000L))
+                .signWith(signingKey)
+                .compact();
+    }
+    
+    @Benchmark
+    public Object verify() {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+}
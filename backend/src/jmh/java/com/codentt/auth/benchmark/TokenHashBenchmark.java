@@ -0,0 +1,77 @@
+package com.codentt.auth.benchmark;
+
+import com.codentt.auth.utils.TokenHash;
+import com.codentt.auth.utils.TokenHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call digest plus Base64 string (the old SessionService.hashToken) against the reused
+ * per-thread digest and binary key, for hashing alone and for a cache lookup by hash.
+ * Run with -prof gc to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class TokenHashBenchmark {
+    
+    private static final int CACHED_TOKENS = 100_000;
+    
+    private String token;
+    private final Map<String, Boolean> base64Keyed = new HashMap<>();
+    private final Map<TokenHash, Boolean> binaryKeyed = new HashMap<>();
+    
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        for (int i = 0; i < CACHED_TOKENS; i++) {
+            String cachedToken = syntheticJwt(i);
+            base64Keyed.put(legacyHash(cachedToken), Boolean.TRUE);
+            binaryKeyed.put(TokenHasher.hash(cachedToken), Boolean.TRUE);
+        }
+        token = syntheticJwt(CACHED_TOKENS / 2);
+    }
+    
+    @Benchmark
+    public String legacyBase64() throws NoSuchAlgorithmException {
+        return legacyHash(token);
+    }
+    
+    @Benchmark
+    public TokenHash threadLocalBinary() {
+        return TokenHasher.hash(token);
+    }
+    
+    @Benchmark
+    public Boolean legacyBase64Lookup() throws NoSuchAlgorithmException {
+        return base64Keyed.get(legacyHash(token));
+    }
+    
+    @Benchmark
+    public Boolean threadLocalBinaryLookup() {
+        return binaryKeyed.get(TokenHasher.hash(token));
+    }
+    
+    private static String legacyHash(String value) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return Base64.getEncoder().encodeToString(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static String syntheticJwt(int i) {
+        // Same shape and length as an HS256 access token carrying the login claims
+        String payload = "{\"userId\":" + i + ",\"username\":\"user" + i + "\",\"roles\":[\"USER\"],\"gen\":0,"
+                + "\"sub\":\"user" + i + "\",\"iat\":1760000000,\"exp\":1760086400}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "eyJhbGciOiJIUzI1NiJ9."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(("signature-" + i + "-0123456789abcdef0123").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+-- Index size and lookup latency of Base64 VARCHAR token hashes against 32-byte BYTEA hashes.
+-- Run against a scratch database:  psql -d scratch -f src/jmh/sql/token_hash_index.sql
+-- Uses 10M rows per table by default; pass -v rows=1000000 for a quicker run.
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+    \set rows 10000000
+\endif
+\timing off
+
+DROP TABLE IF EXISTS bench_hash_text;
+DROP TABLE IF EXISTS bench_hash_bytea;
+
+CREATE UNLOGGED TABLE bench_hash_text (id BIGINT PRIMARY KEY, access_token_hash VARCHAR(255) NOT NULL);
+CREATE UNLOGGED TABLE bench_hash_bytea (id BIGINT PRIMARY KEY, access_token_hash BYTEA NOT NULL);
+
+INSERT INTO bench_hash_bytea
+SELECT i, sha256(('token-' || i)::BYTEA) FROM generate_series(1, :rows) AS i;
+INSERT INTO bench_hash_text
+SELECT id, encode(access_token_hash, 'base64') FROM bench_hash_bytea;
+
+CREATE INDEX bench_hash_text_idx ON bench_hash_text(access_token_hash);
+CREATE INDEX bench_hash_bytea_idx ON bench_hash_bytea(access_token_hash);
+VACUUM ANALYZE bench_hash_text;
+VACUUM ANALYZE bench_hash_bytea;
+
+-- Index and table sizes
+SELECT relname,
+       pg_size_pretty(pg_relation_size(oid)) AS size,
+       pg_relation_size(oid) AS bytes
+FROM pg_class
+WHERE relname IN ('bench_hash_text', 'bench_hash_text_idx', 'bench_hash_bytea', 'bench_hash_bytea_idx')
+ORDER BY relname;
+
+-- Lookup latency: 100k random point lookups through each index, as prepared statements like the app issues
+PREPARE lookup_text(VARCHAR) AS SELECT id FROM bench_hash_text WHERE access_token_hash = $1;
+PREPARE lookup_bytea(BYTEA) AS SELECT id FROM bench_hash_bytea WHERE access_token_hash = $1;
+
+CREATE OR REPLACE FUNCTION bench_lookups(use_bytea BOOLEAN, lookups INT, max_id BIGINT) RETURNS INTERVAL AS $$
+DECLARE
+    started TIMESTAMPTZ := clock_timestamp();
+    probe BYTEA;
+    found BIGINT;
+BEGIN
+    FOR i IN 1..lookups LOOP
+        probe := sha256(('token-' || (1 + floor(random() * max_id))::BIGINT)::BYTEA);
+        IF use_bytea THEN
+            SELECT id INTO found FROM bench_hash_bytea WHERE access_token_hash = probe;
+        ELSE
+            SELECT id INTO found FROM bench_hash_text WHERE access_token_hash = encode(probe, 'base64');
+        END IF;
+    END LOOP;
+    RETURN (clock_timestamp() - started) / lookups;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Warm both indexes, then measure
+SELECT bench_lookups(FALSE, 10000, :rows), bench_lookups(TRUE, 10000, :rows);
+SELECT 'varchar' AS storage, bench_lookups(FALSE, 100000, :rows) AS avg_lookup
+UNION ALL
+SELECT 'bytea', bench_lookups(TRUE, 100000, :rows);
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE lookup_text(encode(sha256('token-4242'::BYTEA), 'base64'));
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE lookup_bytea(sha256('token-4242'::BYTEA));
+
+DROP FUNCTION bench_lookups(BOOLEAN, INT, BIGINT);
+DROP TABLE bench_hash_text;
+DROP TABLE bench_hash_bytea;
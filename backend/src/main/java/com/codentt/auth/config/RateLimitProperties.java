@@ -0,0 +1,45 @@
+package com.codentt.auth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative rate-limit policies, bound from {@code app.rate-limit}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+    
+    private boolean enabled = true;
+    
+    private String backend = "memory"; // memory (single node) or postgres (shared across nodes)
+    
+    private double leaseFraction = 0.1; // share of a window's capacity a node claims per database write
+    
+    private long evictionInterval = 60000; // ms between sweeps of idle buckets
+    
+    private int maxBodySize = 16384; // bytes read from bodies of account-keyed requests; larger bodies get a 413
+    
+    private List<Policy> policies = new ArrayList<>();
+    
+    @Data
+    public static class Policy {
+        private String name;
+        private String path; // Ant-style pattern, e.g. /auth/login
+        private String method; // null matches any method
+        private KeyType key = KeyType.IP;
+        private String accountField; // JSON body field holding the account, for ACCOUNT keys
+        private int capacity; // requests allowed per period, also the burst size
+        private long period; // ms
+    }
+    
+    public enum KeyType {
+        IP,      // client address
+        ACCOUNT  // account named in the request body
+    }
+}
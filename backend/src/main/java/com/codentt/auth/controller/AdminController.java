@@ -0,0 +1,37 @@
+package com.codentt.auth.controller;
+
+import com.codentt.auth.dto.ApiResponse;
+import com.codentt.auth.dto.JobStatusResponse;
+import com.codentt.auth.service.AuthService;
+import com.codentt.auth.service.JobCoordinationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+    
+    private final AuthService authService;
+    private final JobCoordinationService jobCoordinationService;
+    
+    @PostMapping("/users/{userId}/logout")
+    public ResponseEntity<ApiResponse<String>> logoutUser(@PathVariable Long userId) {
+        return ResponseEntity.ok(authService.logoutUser(userId));
+    }
+    
+    @PostMapping("/sessions/logout-all")
+    public ResponseEntity<ApiResponse<String>> logoutEveryone() {
+        return ResponseEntity.ok(authService.logoutEveryone());
+    }
+    
+    @GetMapping("/jobs")
+    public ResponseEntity<ApiResponse<List<JobStatusResponse>>> jobs() {
+        return ResponseEntity.ok(ApiResponse.success("Job status retrieved successfully", jobCoordinationService.jobStatuses()));
+    }
+}
@@ -1,13 +1,23 @@
 package com.codentt.auth.controller;
 
 import com.codentt.auth.dto.*;
+import com.codentt.auth.security.ClientIpResolver;
 import com.codentt.auth.service.AuthService;
 import com.codentt.auth.service.HumanVerificationService;
+import com.codentt.auth.service.JwtService;
+import com.codentt.auth.service.TokenIntrospectionService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/auth")
 @RequiredArgsConstructor
@@ -15,6 +25,12 @@ public class AuthController {
     
     private final AuthService authService;
     private final HumanVerificationService humanVerificationService;
+    private final JwtService jwtService;
+    private final TokenIntrospectionService tokenIntrospectionService;
+    private final ClientIpResolver clientIpResolver;
+    
+    @Value("${jwt.jwks-max-age:900000}")
+    private Long jwksMaxAge;
     
     @PostMapping("/register")
     public ResponseEntity<ApiResponse<String>> register(@Valid @RequestBody RegisterRequest request) {
@@ -37,13 +53,16 @@ public class AuthController {
     }
     
     @GetMapping("/login-challenge")
-    public ResponseEntity<LoginChallengeResponse> getLoginChallenge() {
-        return ResponseEntity.ok(humanVerificationService.generateChallenge());
+    public ResponseEntity<LoginChallengeResponse> getLoginChallenge(@RequestParam(required = false) String username,
+                                                                    HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(humanVerificationService.generateChallenge(clientIpResolver.resolve(httpRequest), username));
     }
     
     @PostMapping("/login")
-    public ResponseEntity<ApiResponse<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
-        return ResponseEntity.ok(authService.login(request));
+    public ResponseEntity<ApiResponse<AuthResponse>> login(@Valid @RequestBody LoginRequest request,
+                                                           HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(authService.login(request,
+                httpRequest.getHeader(HttpHeaders.USER_AGENT), clientIpResolver.resolve(httpRequest)));
     }
     
     @PostMapping("/forgot-password")
@@ -71,5 +90,27 @@ public class AuthController {
                 : null;
         return ResponseEntity.ok(authService.logoutAll(token));
     }
+    
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        // Keys are published ahead of use, so downstream caches can safely hold this for max-age
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMillis(jwksMaxAge)).cachePublic())
+                .body(jwtService.getPublicJwks());
+    }
+    
+    @PostMapping("/introspect")
+    public ResponseEntity<IntrospectResponse> introspect(
+            @RequestHeader(value = "X-Introspection-Key", required = false) String introspectionKey,
+            @Valid @RequestBody IntrospectRequest request) {
+        tokenIntrospectionService.checkApiKey(introspectionKey);
+        IntrospectResponse response = tokenIntrospectionService.introspect(request.getTokens());
+        long maxAge = response.getResults().stream()
+                .mapToLong(IntrospectResponse.TokenStatus::getMaxAge)
+                .min()
+                .orElse(0);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePrivate())
+                .body(response);
+    }
 }
-
@@ -15,6 +15,7 @@ public class AuthResponse {
     @Builder.Default
     private String tokenType = "Bearer";
     private Long expiresIn;
+    private String trustedDeviceToken; // Send back on later logins from this device to skip the challenge
     private UserInfo user;
     
     @Data
@@ -0,0 +1,13 @@
+package com.codentt.auth.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IntrospectRequest {
+    
+    @NotEmpty(message = "At least one token is required")
+    private List<String> tokens;
+}
@@ -0,0 +1,29 @@
+package com.codentt.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IntrospectResponse {
+    private List<TokenStatus> results; // same order as the request
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TokenStatus {
+        private boolean active;
+        private String sub;
+        private Long userId;
+        private List<String> roles;
+        private Long exp; // epoch seconds
+        private Long maxAge; // seconds this answer may be cached
+    }
+}
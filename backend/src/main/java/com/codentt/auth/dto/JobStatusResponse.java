@@ -0,0 +1,26 @@
+package com.codentt.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobStatusResponse {
+    private String jobName;
+    private String owner; // node currently holding the lease
+    private boolean leaseActive;
+    private LocalDateTime leaseUntil;
+    private LocalDateTime acquiredAt;
+    private LocalDateTime lastStartedAt;
+    private LocalDateTime lastFinishedAt;
+    private Long lastDurationMs;
+    private String lastStatus; // SUCCEEDED or FAILED
+    private String lastError;
+    private long runCount;
+}
@@ -16,6 +16,8 @@ public class LoginChallengeResponse {
     private String challengeType;
     private String question;
     private List<String> options;
+    private String nonce; // PROOF_OF_WORK only
+    private Integer difficulty; // PROOF_OF_WORK only, leading zero bits
     private Long expiresIn; // seconds
 }
 
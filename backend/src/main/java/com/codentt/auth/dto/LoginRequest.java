@@ -12,10 +12,11 @@ public class LoginRequest {
     @NotBlank(message = "Password is required")
     private String password;
     
-    @NotBlank(message = "Challenge token is required")
+    // Required unless a valid trusted-device token for this account is presented
     private String challengeToken;
     
-    @NotBlank(message = "Challenge answer is required")
     private String challengeAnswer;
+    
+    private String trustedDeviceToken;
 }
 
@@ -0,0 +1,44 @@
+package com.codentt.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "jwt_signing_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JwtSigningKey {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true, length = 64)
+    private String kid;
+    
+    @Column(nullable = false, length = 10)
+    private String algorithm; // JWS algorithm: RS256, ES256 or EdDSA
+    
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] publicKey; // X.509 encoded
+    
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] privateKey; // PKCS#8 encoded, AES-GCM encrypted
+    
+    @Column(nullable = false)
+    private LocalDateTime activatesAt; // published in the JWKS before this, used for signing after
+    
+    private LocalDateTime retiredAt; // no longer signs; kept for verification until issued tokens expire
+    
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
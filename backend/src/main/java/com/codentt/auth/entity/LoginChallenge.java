@@ -10,10 +10,7 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "login_challenges", indexes = {
-    @Index(name = "idx_challenge_token", columnList = "challengeToken"),
-    @Index(name = "idx_expiry", columnList = "expiryDate")
-})
+@Table(name = "login_challenges") // Range-partitioned by expiry_date, see V16
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +37,8 @@ public class LoginChallenge {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String options; // JSON string of all options
     
+    private Integer difficulty; // Leading zero bits, PROOF_OF_WORK only
+    
     @Column(nullable = false)
     private LocalDateTime expiryDate;
     
@@ -58,7 +57,8 @@ public class LoginChallenge {
     public enum ChallengeType {
         SENTENCE_ARRANGEMENT, // Arrange words to form sentence
         INTENT_SELECTION,     // Select correct intent
-        IMAGE_MATCH           // Match image to word
+        IMAGE_MATCH,          // Match image to word
+        PROOF_OF_WORK         // Find a hash with enough leading zero bits
     }
     
     public boolean isExpired() {
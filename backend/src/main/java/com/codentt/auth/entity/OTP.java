@@ -6,11 +6,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "otps", indexes = {
+@DynamicUpdate
+@Table(name = "otps", indexes = { // At most one unused row per (identifier, otp_type), see V20
     @Index(name = "idx_identifier", columnList = "identifier"),
     @Index(name = "idx_user", columnList = "user_id")
 })
@@ -53,6 +55,9 @@ public class OTP {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
+    @Column(nullable = false)
+    private LocalDateTime lastSentAt;
+    
     public enum OtpType {
         PHONE_VERIFICATION,
         EMAIL_VERIFICATION
@@ -62,12 +67,8 @@ public class OTP {
         return LocalDateTime.now().isAfter(expiryDate);
     }
     
-    public boolean isValid() {
-        return !used && !isExpired() && retryCount < 3;
-    }
-    
-    public void incrementRetryCount() {
-        this.retryCount++;
+    public boolean isValid(int maxRetries) {
+        return !used && !isExpired() && retryCount < maxRetries;
     }
 }
 
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -13,6 +14,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@DynamicUpdate
 @Table(name = "users", indexes = {
     @Index(name = "idx_email", columnList = "email"),
     @Index(name = "idx_phone", columnList = "phoneNumber"),
@@ -68,6 +70,11 @@ public class User {
     
     private LocalDateTime lockoutTime;
     
+    // Bumped by logout-all with a single UPDATE; never written through entity saves so a stale copy can't roll it back
+    @Column(nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Integer sessionGeneration = 0;
+    
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Column(name = "role")
@@ -109,19 +116,5 @@ public class User {
     public boolean isFullyVerified() {
         return emailVerified && phoneVerified;
     }
-    
-    public void incrementFailedLoginAttempts() {
-        this.failedLoginAttempts++;
-        if (this.failedLoginAttempts >= 5) {
-            this.accountNonLocked = false;
-            this.lockoutTime = LocalDateTime.now();
-        }
-    }
-    
-    public void resetFailedLoginAttempts() {
-        this.failedLoginAttempts = 0;
-        this.accountNonLocked = true;
-        this.lockoutTime = null;
-    }
 }
 
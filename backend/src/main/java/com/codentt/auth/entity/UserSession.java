@@ -11,10 +11,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "user_sessions", indexes = {
     @Index(name = "idx_user_sessions_user_id", columnList = "user_id"),
-    @Index(name = "idx_user_sessions_access_token_hash", columnList = "access_token_hash"),
-    @Index(name = "idx_user_sessions_is_active", columnList = "is_active"),
-    @Index(name = "idx_user_sessions_expires_at", columnList = "expires_at")
-})
+    @Index(name = "idx_user_sessions_access_token_hash", columnList = "access_token_hash")
+}) // Range-partitioned by expires_at, see V16
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,11 +27,11 @@ public class UserSession {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
     
-    @Column(nullable = false, length = 255)
-    private String accessTokenHash;
+    @Column(nullable = false, length = 32)
+    private byte[] accessTokenHash; // SHA-256 of the token, see TokenHasher
     
-    @Column(length = 255)
-    private String refreshTokenHash;
+    @Column(length = 32)
+    private byte[] refreshTokenHash;
     
     @Column(length = 255)
     private String deviceInfo;
@@ -48,6 +46,8 @@ public class UserSession {
     @Column(nullable = false)
     private LocalDateTime expiresAt;
     
+    private LocalDateTime lastSeenAt;
+    
     @Column(nullable = false)
     @Builder.Default
     private Boolean isActive = true;
@@ -0,0 +1,30 @@
+package com.codentt.auth.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Expected login failures. Credential-stuffing traffic throws these by the thousand, so the
+ * instances are preallocated and carry no stack trace: throwing one costs about as much as a return.
+ */
+public class LoginRejectedException extends RuntimeException {
+    
+    public static final LoginRejectedException INVALID_CREDENTIALS =
+            new LoginRejectedException(HttpStatus.UNAUTHORIZED, "Invalid email/phone or password");
+    public static final LoginRejectedException HUMAN_VERIFICATION_FAILED =
+            new LoginRejectedException(HttpStatus.UNAUTHORIZED, "Human verification failed");
+    public static final LoginRejectedException ACCOUNT_LOCKED =
+            new LoginRejectedException(HttpStatus.LOCKED, "Account is locked. Please try again later.");
+    public static final LoginRejectedException SOURCE_BLOCKED =
+            new LoginRejectedException(HttpStatus.TOO_MANY_REQUESTS, "Too many failed logins. Please try again later.");
+    
+    private final HttpStatus status;
+    
+    private LoginRejectedException(HttpStatus status, String message) {
+        super(message, null, false, false);
+        this.status = status;
+    }
+    
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
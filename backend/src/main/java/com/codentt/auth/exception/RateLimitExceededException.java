@@ -1,8 +0,0 @@
-package com.codentt.auth.exception;
-
-public class RateLimitExceededException extends RuntimeException {
-    public RateLimitExceededException(String message) {
-        super(message);
-    }
-}
-
@@ -0,0 +1,29 @@
+package com.codentt.auth.repository;
+
+import com.codentt.auth.entity.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, Long> {
+    
+    @Query("SELECT k FROM JwtSigningKey k WHERE k.retiredAt IS NULL OR k.retiredAt > :retainedSince ORDER BY k.activatesAt DESC")
+    List<JwtSigningKey> findVerificationKeys(@Param("retainedSince") LocalDateTime retainedSince);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE JwtSigningKey k SET k.retiredAt = :retiredAt WHERE k.retiredAt IS NULL AND k.kid <> :newKid")
+    void retireAllExcept(@Param("newKid") String newKid, @Param("retiredAt") LocalDateTime retiredAt);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM JwtSigningKey k WHERE k.retiredAt < :retainedSince")
+    void deleteRetiredBefore(@Param("retainedSince") LocalDateTime retainedSince);
+}
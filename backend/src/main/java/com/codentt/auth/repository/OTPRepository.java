@@ -1,22 +1,82 @@
 package com.codentt.auth.repository;
 
 import com.codentt.auth.entity.OTP;
-import com.codentt.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface OTPRepository extends JpaRepository<OTP, Long> {
-    Optional<OTP> findByCodeAndIdentifierAndOtpType(String code, String identifier, OTP.OtpType otpType);
-    Optional<OTP> findTopByUserAndOtpTypeOrderByCreatedAtDesc(User user, OTP.OtpType otpType);
+    // Served by the partial unique index on (identifier, otp_type) WHERE used = false
+    Optional<OTP> findByIdentifierAndOtpTypeAndUsedFalse(String identifier, OTP.OtpType otpType);
+    
+    /**
+     * Creates the active OTP for the identifier, or updates the existing one: a still valid code is
+     * kept, anything else is rotated to {@code code}. Still valid means unexpired, below
+     * {@code maxRetries} failed attempts and issued to the same user. {@code last_sent_at} only
+     * moves when this call should send an SMS, i.e. unless the code is kept and was last sent after
+     * {@code coalesceSince}.
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO otps AS o (code, user_id, identifier, otp_type, expiry_date, used, retry_count,
+                                   created_at, last_sent_at)
+            VALUES (:code, :userId, :identifier, :otpType, :expiresAt, FALSE, 0, :now, :now)
+            ON CONFLICT (identifier, otp_type) WHERE used = FALSE DO UPDATE SET
+                (code, expiry_date, retry_count, created_at, last_sent_at, user_id) = (
+                    SELECT CASE WHEN existing.keep THEN o.code ELSE EXCLUDED.code END,
+                           CASE WHEN existing.keep THEN o.expiry_date ELSE EXCLUDED.expiry_date END,
+                           CASE WHEN existing.keep THEN o.retry_count ELSE 0 END,
+                           CASE WHEN existing.keep THEN o.created_at ELSE EXCLUDED.created_at END,
+                           CASE WHEN existing.keep AND o.last_sent_at > :coalesceSince
+                                THEN o.last_sent_at ELSE EXCLUDED.last_sent_at END,
+                           EXCLUDED.user_id
+                    FROM (SELECT o.expiry_date > :now AND o.retry_count < :maxRetries
+                                 AND o.user_id = EXCLUDED.user_id AS keep) existing
+                )
+            RETURNING o.code AS code, o.last_sent_at = :now AS send
+            """)
+    IssuedOtp upsertActive(@Param("code") String code, @Param("userId") Long userId,
+                           @Param("identifier") String identifier, @Param("otpType") String otpType,
+                           @Param("expiresAt") LocalDateTime expiresAt, @Param("now") LocalDateTime now,
+                           @Param("coalesceSince") LocalDateTime coalesceSince, @Param("maxRetries") int maxRetries);
+    
+    /**
+     * Consumes the OTP, if it is still valid and belongs to the user with its phone number, and
+     * marks the phone verified, in one statement.
+     *
+     * @return the user id, or empty if the OTP can't be consumed
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH consumed AS (
+                UPDATE otps o SET used = TRUE
+                FROM users u
+                WHERE o.id = :id AND o.used = FALSE AND o.expiry_date > :now AND o.retry_count < :maxRetries
+                  AND u.id = o.user_id AND u.phone_number = o.identifier
+                RETURNING o.user_id
+            ), verified AS (
+                UPDATE users SET phone_verified = TRUE, updated_at = :now
+                WHERE id IN (SELECT user_id FROM consumed) AND phone_verified = FALSE
+            )
+            SELECT user_id FROM consumed
+            """)
+    Optional<Long> consumePhoneVerification(@Param("id") Long id, @Param("now") LocalDateTime now,
+                                            @Param("maxRetries") int maxRetries);
     
     @Modifying
-    @Query("DELETE FROM OTP o WHERE o.expiryDate < ?1")
-    void deleteExpiredOTPs(LocalDateTime now);
+    @Transactional
+    @Query("UPDATE OTP o SET o.retryCount = o.retryCount + 1 WHERE o.id = :id")
+    void incrementRetryCount(@Param("id") Long id);
+    
+    interface IssuedOtp {
+        String getCode();
+        Boolean getSend();
+    }
 }
-
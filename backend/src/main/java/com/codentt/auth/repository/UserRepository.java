@@ -2,8 +2,15 @@ package com.codentt.auth.repository;
 
 import com.codentt.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,5 +23,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     boolean existsByPhoneNumber(String phoneNumber);
+    
+    @Query("SELECT u.id FROM User u WHERE u.enabled = false OR (u.accountNonLocked = false AND u.lockoutTime > :lockedSince)")
+    List<Long> findBlockedUserIds(@Param("lockedSince") LocalDateTime lockedSince);
+    
+    @Query("SELECT u.sessionGeneration FROM User u WHERE u.id = :id")
+    Optional<Integer> findSessionGeneration(@Param("id") Long id);
+    
+    @Query("SELECT u.id, u.sessionGeneration FROM User u WHERE u.id IN :ids")
+    List<Object[]> findSessionGenerations(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.sessionGeneration = u.sessionGeneration + 1 WHERE u.id = :id")
+    int incrementSessionGeneration(@Param("id") Long id);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    void updatePassword(@Param("id") Long id, @Param("password") String password);
+    
+    // Matches nothing once the number has moved to another account
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.phoneVerified = true, u.updatedAt = :now WHERE u.id = :id AND u.phoneNumber = :phoneNumber")
+    int markPhoneVerified(@Param("id") Long id, @Param("phoneNumber") String phoneNumber, @Param("now") LocalDateTime now);
 }
-
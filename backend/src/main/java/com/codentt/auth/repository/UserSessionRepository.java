@@ -9,24 +9,22 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserSessionRepository extends JpaRepository<UserSession, Long> {
-    Optional<UserSession> findByAccessTokenHash(String accessTokenHash);
+    Optional<UserSession> findByAccessTokenHash(byte[] accessTokenHash);
+    // The expiry bound lets Postgres prune partitions that only hold expired sessions
+    Optional<UserSession> findByAccessTokenHashAndExpiresAtAfter(byte[] accessTokenHash, LocalDateTime now);
     List<UserSession> findByUserAndIsActiveTrue(User user);
     
-    @Modifying
-    @Query("UPDATE UserSession s SET s.isActive = false WHERE s.user = :user")
-    void deactivateAllUserSessions(@Param("user") User user);
-    
-    @Modifying
-    @Query("UPDATE UserSession s SET s.isActive = false WHERE s.accessTokenHash = :tokenHash")
-    void deactivateSessionByToken(@Param("tokenHash") String tokenHash);
+    @Query("SELECT s.accessTokenHash FROM UserSession s WHERE s.accessTokenHash IN :tokenHashes AND s.isActive = false AND s.expiresAt > :now")
+    List<byte[]> findRevokedTokenHashes(@Param("tokenHashes") Collection<byte[]> tokenHashes, @Param("now") LocalDateTime now);
     
     @Modifying
-    @Query("DELETE FROM UserSession s WHERE s.expiresAt < :now")
-    void deleteExpiredSessions(@Param("now") LocalDateTime now);
+    @Query("UPDATE UserSession s SET s.isActive = false WHERE s.accessTokenHash = :tokenHash AND s.expiresAt > :now")
+    void deactivateSessionByToken(@Param("tokenHash") byte[] tokenHash, @Param("now") LocalDateTime now);
 }
 
@@ -2,9 +2,10 @@ package com.codentt.auth.repository;
 
 import com.codentt.auth.entity.VerificationToken;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -13,8 +14,46 @@ import java.util.Optional;
 public interface VerificationTokenRepository extends JpaRepository<VerificationToken, Long> {
     Optional<VerificationToken> findByToken(String token);
     
-    @Modifying
-    @Query("DELETE FROM VerificationToken vt WHERE vt.expiryDate < ?1")
-    void deleteExpiredTokens(LocalDateTime now);
+    boolean existsByTokenAndTokenTypeAndUsedFalseAndExpiryDateAfter(String token, VerificationToken.TokenType tokenType,
+                                                                     LocalDateTime now);
+    
+    /**
+     * Consumes a valid email verification token and marks its user's email verified, in one statement.
+     *
+     * @return the user id, or empty if the token is unknown, of another type, expired or already used
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH consumed AS (
+                UPDATE verification_tokens SET used = TRUE
+                WHERE token = :token AND token_type = 'EMAIL_VERIFICATION' AND used = FALSE AND expiry_date > :now
+                RETURNING user_id
+            ), verified AS (
+                UPDATE users SET email_verified = TRUE, updated_at = :now
+                WHERE id IN (SELECT user_id FROM consumed) AND email_verified = FALSE
+            )
+            SELECT user_id FROM consumed
+            """)
+    Optional<Long> consumeEmailVerification(@Param("token") String token, @Param("now") LocalDateTime now);
+    
+    /**
+     * Consumes a valid password reset token and stores the new password hash, in one statement.
+     *
+     * @return the user id, or empty if the token is unknown, of another type, expired or already used
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH consumed AS (
+                UPDATE verification_tokens SET used = TRUE
+                WHERE token = :token AND token_type = 'PASSWORD_RESET' AND used = FALSE AND expiry_date > :now
+                RETURNING user_id
+            ), updated AS (
+                UPDATE users SET password = :password, updated_at = :now
+                WHERE id IN (SELECT user_id FROM consumed)
+            )
+            SELECT user_id FROM consumed
+            """)
+    Optional<Long> consumePasswordReset(@Param("token") String token, @Param("password") String encodedPassword,
+                                        @Param("now") LocalDateTime now);
 }
 
@@ -0,0 +1,55 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of the accounts that must not be authenticated (locked or disabled).
+ * Lets token checks stay stateless: the set is small, refreshed periodically with a single
+ * query, and updated immediately when this node locks or unlocks an account.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountStatusRegistry {
+    
+    private final UserRepository userRepository;
+    
+    @Value("${app.login-lockout-duration}")
+    private Long lockoutDuration;
+    
+    private volatile Set<Long> blockedUserIds = ConcurrentHashMap.newKeySet();
+    
+    public boolean isBlocked(Long userId) {
+        return userId != null && blockedUserIds.contains(userId);
+    }
+    
+    public void markLocked(Long userId) {
+        blockedUserIds.add(userId);
+    }
+    
+    public void markUnlocked(Long userId) {
+        blockedUserIds.remove(userId);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.account-status-refresh-interval:30000}")
+    public void refresh() {
+        try {
+            LocalDateTime lockedSince = LocalDateTime.now().minusSeconds(lockoutDuration / 1000);
+            Set<Long> refreshed = ConcurrentHashMap.newKeySet();
+            refreshed.addAll(userRepository.findBlockedUserIds(lockedSince));
+            blockedUserIds = refreshed;
+        } catch (Exception e) {
+            // Keep serving from the last known set; the next refresh will retry
+            log.warn("Could not refresh blocked account list: {}", e.getMessage());
+        }
+    }
+}
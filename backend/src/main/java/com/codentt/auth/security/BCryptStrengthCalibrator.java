@@ -0,0 +1,78 @@
+package com.codentt.auth.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Picks the BCrypt cost factor for the hardware this node runs on.
+ * <p>
+ * The budget per hash is the stricter of the target latency and the time one core can spend
+ * per login at the target login rate. Costs are tried from the configured minimum upwards and
+ * the highest one that still fits the budget wins. The minimum is a security floor and is used
+ * even if it does not fit.
+ */
+@Slf4j
+@Component
+public class BCryptStrengthCalibrator {
+    
+    private static final int SAMPLES = 3;
+    
+    @Value("${app.password-hashing.calibrate:true}")
+    private boolean calibrate;
+    
+    @Value("${app.password-hashing.strength:10}")
+    private int fixedStrength;
+    
+    @Value("${app.password-hashing.target-latency:60}")
+    private long targetLatencyMs;
+    
+    @Value("${app.password-hashing.target-logins-per-second-per-core:15}")
+    private double targetLoginsPerSecondPerCore;
+    
+    @Value("${app.password-hashing.min-strength:10}")
+    private int minStrength;
+    
+    @Value("${app.password-hashing.max-strength:14}")
+    private int maxStrength;
+    
+    public int strength() {
+        if (!calibrate) {
+            return fixedStrength;
+        }
+        
+        double budgetMs = Math.min(targetLatencyMs, 1000.0 / targetLoginsPerSecondPerCore);
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            double elapsedMs = measure(strength);
+            log.debug("BCrypt cost {} takes {} ms", strength, String.format("%.1f", elapsedMs));
+            if (elapsedMs > budgetMs) {
+                if (strength == minStrength) {
+                    log.warn("BCrypt minimum cost {} exceeds the {} ms budget on this node", minStrength, budgetMs);
+                }
+                break;
+            }
+            chosen = strength;
+        }
+        
+        log.info("Calibrated BCrypt cost factor {} for a {} ms budget", chosen, String.format("%.1f", budgetMs));
+        return chosen;
+    }
+    
+    private double measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode("calibration-warmup");
+        
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration-sample-" + i);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
@@ -0,0 +1,89 @@
+package com.codentt.auth.security;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request wrapper that reads the body once so a filter can inspect it and the controller can
+ * still read it afterwards. At most {@code maxBytes} are read; a larger body is refused with
+ * {@link BodyTooLargeException} before it is buffered.
+ */
+public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
+    
+    private final byte[] body;
+    
+    public CachedBodyHttpServletRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        if (request.getContentLengthLong() > maxBytes) {
+            throw new BodyTooLargeException(maxBytes);
+        }
+        // One byte over the limit is enough to tell a chunked body is too large
+        byte[] read = request.getInputStream().readNBytes(maxBytes + 1);
+        if (read.length > maxBytes) {
+            throw new BodyTooLargeException(maxBytes);
+        }
+        this.body = read;
+    }
+    
+    public byte[] getBody() {
+        return body;
+    }
+    
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream stream = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return stream.available() == 0;
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                // Everything is already in memory, so all of it is available straight away
+                try {
+                    if (!isFinished()) {
+                        readListener.onDataAvailable();
+                    }
+                    readListener.onAllDataRead();
+                } catch (IOException e) {
+                    readListener.onError(e);
+                }
+            }
+            
+            @Override
+            public int read() {
+                return stream.read();
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return stream.read(b, off, len);
+            }
+        };
+    }
+    
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
+    
+    public static class BodyTooLargeException extends IOException {
+        public BodyTooLargeException(int maxBytes) {
+            super("Request body exceeds " + maxBytes + " bytes");
+        }
+    }
+}
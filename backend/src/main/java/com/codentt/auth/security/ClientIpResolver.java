@@ -0,0 +1,133 @@
+package com.codentt.auth.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Works out the address of the client behind our own reverse proxies.
+ * <p>
+ * {@code X-Forwarded-For} is only believed when the connection comes from one of
+ * {@code app.trusted-proxies} (IPs or CIDR ranges). The header is then read right to left, skipping
+ * further trusted hops, and the first address that is not a trusted proxy is the client; anything
+ * to its left was written by the client and is ignored. With no trusted proxies configured the
+ * socket address is used as is, so the header can never be spoofed.
+ */
+@Slf4j
+@Component
+public class ClientIpResolver {
+    
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+    // Literal addresses only: anything else would make InetAddress go to DNS
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F:.]*:[0-9a-fA-F:.]*");
+    
+    @Value("${app.trusted-proxies:}")
+    private String trustedProxies;
+    
+    private final List<Range> trustedRanges = new ArrayList<>();
+    
+    @PostConstruct
+    void init() {
+        for (String entry : trustedProxies.split(",")) {
+            if (!entry.isBlank()) {
+                trustedRanges.add(Range.parse(entry.trim()));
+            }
+        }
+        if (!trustedRanges.isEmpty()) {
+            log.info("Trusting X-Forwarded-For from {}", trustedProxies);
+        }
+    }
+    
+    public String resolve(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        if (trustedRanges.isEmpty() || !isTrusted(remoteAddress)) {
+            return remoteAddress;
+        }
+        String client = remoteAddress;
+        for (String header : reversed(request.getHeaders(FORWARDED_FOR))) {
+            String[] hops = header.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (parse(hop) == null) {
+                    // A garbled chain can't be followed further; the last hop we could vouch for stands
+                    return client;
+                }
+                client = hop;
+                if (!isTrusted(hop)) {
+                    return client;
+                }
+            }
+        }
+        return client;
+    }
+    
+    private boolean isTrusted(String address) {
+        InetAddress parsed = parse(address);
+        return parsed != null && trustedRanges.stream().anyMatch(range -> range.contains(parsed));
+    }
+    
+    private static List<String> reversed(Enumeration<String> headers) {
+        List<String> values = new ArrayList<>();
+        while (headers != null && headers.hasMoreElements()) {
+            values.add(0, headers.nextElement());
+        }
+        return values;
+    }
+    
+    private static InetAddress parse(String address) {
+        if (address == null || !(IPV4.matcher(address).matches() || IPV6.matcher(address).matches())) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+    
+    private record Range(byte[] network, int prefixLength) {
+        
+        static Range parse(String cidr) {
+            int slash = cidr.indexOf('/');
+            InetAddress address = ClientIpResolver.parse(slash < 0 ? cidr : cidr.substring(0, slash));
+            if (address == null) {
+                throw new IllegalArgumentException("Invalid trusted proxy: " + cidr);
+            }
+            byte[] network = address.getAddress();
+            int prefixLength = slash < 0 ? network.length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+            if (prefixLength < 0 || prefixLength > network.length * 8) {
+                throw new IllegalArgumentException("Invalid trusted proxy: " + cidr);
+            }
+            return new Range(network, prefixLength);
+        }
+        
+        boolean contains(InetAddress address) {
+            byte[] candidate = address.getAddress();
+            if (candidate.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (candidate[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (candidate[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
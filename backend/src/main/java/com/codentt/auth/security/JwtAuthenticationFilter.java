@@ -1,13 +1,18 @@
 package com.codentt.auth.security;
 
 import com.codentt.auth.service.JwtService;
+import com.codentt.auth.service.SessionService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,13 +21,23 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final AccountStatusRegistry accountStatusRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final SessionService sessionService;
+    private final SessionGenerationRegistry sessionGenerationRegistry;
+    
+    // When enabled, the principal is built from token claims and no user row is loaded per request
+    @Value("${jwt.stateless-principal:true}")
+    private boolean statelessPrincipal;
     
     @Override
     protected void doFilterInternal(
@@ -32,7 +47,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
+        final VerifiedToken verifiedToken;
         
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -40,23 +55,63 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         
         jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt); // This now extracts username, not email
+        try {
+            // Single parse: signature, expiry and claims are all checked here
+            verifiedToken = verifiedTokenCache.get(jwt, jwtService::verifyToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected bearer token: {}", e.getMessage());
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        if (verifiedToken.getTokenType() != null) {
+            // Refresh and trusted-device tokens are never access tokens
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        if (!sessionGenerationRegistry.isCurrent(verifiedToken)) {
+            // Revoked by logout-all or a global logout
+            filterChain.doFilter(request, response);
+            return;
+        }
         
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        if (verifiedToken.getSubject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            JwtAuthenticationToken authToken = statelessPrincipal && verifiedToken.getUserId() != null
+                    ? authenticateFromClaims(verifiedToken)
+                    : authenticateFromDatabase(verifiedToken);
             
-            if (jwtService.validateToken(jwt, userEmail)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
+            if (authToken != null) {
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+                sessionService.touch(jwt);
             }
         }
         
         filterChain.doFilter(request, response);
     }
+    
+    private JwtAuthenticationToken authenticateFromClaims(VerifiedToken verifiedToken) {
+        if (accountStatusRegistry.isBlocked(verifiedToken.getUserId())) {
+            return null;
+        }
+        
+        List<GrantedAuthority> authorities = verifiedToken.getRoles().stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority("ROLE_" + role))
+                .toList();
+        TokenPrincipal principal = new TokenPrincipal(
+                verifiedToken.getUserId(),
+                verifiedToken.getSubject(),
+                verifiedToken.getRoles()
+        );
+        return new JwtAuthenticationToken(principal, verifiedToken, authorities);
+    }
+    
+    private JwtAuthenticationToken authenticateFromDatabase(VerifiedToken verifiedToken) {
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(verifiedToken.getSubject());
+        if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
+            return null;
+        }
+        return new JwtAuthenticationToken(userDetails, verifiedToken, userDetails.getAuthorities());
+    }
 }
-
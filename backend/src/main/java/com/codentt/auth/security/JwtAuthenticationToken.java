@@ -0,0 +1,38 @@
+package com.codentt.auth.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * Authentication placed in the SecurityContext for requests carrying a valid bearer token.
+ * The verified token travels with it so downstream code can read claims without re-parsing.
+ */
+public class JwtAuthenticationToken extends AbstractAuthenticationToken {
+    
+    private final Object principal;
+    private final VerifiedToken token;
+    
+    public JwtAuthenticationToken(Object principal, VerifiedToken token,
+                                  Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.principal = principal;
+        this.token = token;
+        setAuthenticated(true);
+    }
+    
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+    
+    @Override
+    public Object getPrincipal() {
+        return principal;
+    }
+    
+    public VerifiedToken getToken() {
+        return token;
+    }
+}
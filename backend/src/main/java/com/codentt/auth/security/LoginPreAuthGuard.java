@@ -0,0 +1,93 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.exception.LoginRejectedException;
+import com.codentt.auth.service.ProofOfWorkService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * First stage of a login: rejects from memory what is certain to fail, before the challenge,
+ * the user lookup or BCrypt run.
+ * <p>
+ * Two things are rejected: sources with at least {@code app.pre-auth.max-source-failures} recent
+ * failures, and login names this node has seen locked. Locked names are learned from the
+ * logins that hit or cause a lockout, under every name the account can log in with, and
+ * forgotten once the lockout ends. Everything else passes through to the normal checks, so a
+ * miss here only costs the old path.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginPreAuthGuard {
+    
+    private final ProofOfWorkService proofOfWorkService;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.pre-auth.max-source-failures}")
+    private int maxSourceFailures;
+    
+    @Value("${app.pre-auth.max-tracked-accounts:100000}")
+    private long maxTrackedAccounts;
+    
+    @Value("${app.login-lockout-duration}")
+    private Long lockoutDuration;
+    
+    // Login name, exactly as the user lookup matches it -> end of lockout (epoch ms)
+    private Cache<String, Long> lockedAccounts;
+    private Counter lockedRejections;
+    private Counter sourceRejections;
+    
+    @PostConstruct
+    void init() {
+        lockedAccounts = Caffeine.newBuilder()
+                .maximumSize(maxTrackedAccounts)
+                .expireAfterWrite(Duration.ofMillis(lockoutDuration))
+                .build();
+        lockedRejections = Counter.builder("auth.login.pre-auth.rejected")
+                .tag("reason", "locked")
+                .register(meterRegistry);
+        sourceRejections = Counter.builder("auth.login.pre-auth.rejected")
+                .tag("reason", "source")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * @throws LoginRejectedException if the login can be refused without further work
+     */
+    public void check(String ipAddress, String loginName) {
+        if (maxSourceFailures > 0 && ipAddress != null
+                && proofOfWorkService.failuresFromIp(ipAddress) >= maxSourceFailures) {
+            sourceRejections.increment();
+            throw LoginRejectedException.SOURCE_BLOCKED;
+        }
+        if (loginName == null) {
+            return;
+        }
+        Long lockedUntil = lockedAccounts.getIfPresent(loginName);
+        if (lockedUntil != null) {
+            if (System.currentTimeMillis() < lockedUntil) {
+                lockedRejections.increment();
+                throw LoginRejectedException.ACCOUNT_LOCKED;
+            }
+            lockedAccounts.invalidate(loginName);
+        }
+    }
+    
+    public void markLocked(LocalDateTime lockedUntil, String... loginNames) {
+        long lockedUntilMillis = lockedUntil.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (String loginName : loginNames) {
+            if (loginName != null) {
+                lockedAccounts.put(loginName, lockedUntilMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.config.RateLimitProperties;
+import com.codentt.auth.dto.ApiResponse;
+import com.codentt.auth.service.RateLimitBackend;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies the policies from {@link RateLimitProperties} before requests reach the controllers.
+ * Every matching policy must admit the request; the first one that doesn't produces a 429.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    private final RateLimitProperties properties;
+    private final RateLimitBackend rateLimitBackend;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ClientIpResolver clientIpResolver;
+    
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("auth.rate-limit.buckets", rateLimitBackend, RateLimitBackend::size)
+                .register(meterRegistry);
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !properties.isEnabled() || "OPTIONS".equals(request.getMethod());
+    }
+    
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        // The decoded path without ;parameters, as the handler mapping sees it: /auth/%6cogin is /auth/login
+        String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        List<RateLimitProperties.Policy> matching = properties.getPolicies().stream()
+                .filter(policy -> policy.getMethod() == null || policy.getMethod().equalsIgnoreCase(request.getMethod()))
+                .filter(policy -> pathMatcher.match(policy.getPath(), path))
+                .toList();
+        
+        if (matching.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        HttpServletRequest effectiveRequest = request;
+        JsonNode body = null;
+        if (matching.stream().anyMatch(policy -> policy.getKey() == RateLimitProperties.KeyType.ACCOUNT)) {
+            CachedBodyHttpServletRequest cached;
+            try {
+                cached = new CachedBodyHttpServletRequest(request, properties.getMaxBodySize());
+            } catch (CachedBodyHttpServletRequest.BodyTooLargeException e) {
+                writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large");
+                return;
+            }
+            effectiveRequest = cached;
+            body = readJson(cached.getBody());
+        }
+        
+        for (RateLimitProperties.Policy policy : matching) {
+            String key = resolveKey(policy, request, body);
+            if (key == null) {
+                continue;
+            }
+            long retryAfterMs = rateLimitBackend.tryAcquire(policy, key);
+            if (retryAfterMs > 0) {
+                meterRegistry.counter("auth.rate-limit.rejected", "policy", policy.getName()).increment();
+                reject(response, retryAfterMs);
+                return;
+            }
+        }
+        
+        filterChain.doFilter(effectiveRequest, response);
+    }
+    
+    private String resolveKey(RateLimitProperties.Policy policy, HttpServletRequest request, JsonNode body) {
+        if (policy.getKey() == RateLimitProperties.KeyType.IP) {
+            return clientIpResolver.resolve(request);
+        }
+        if (body == null || policy.getAccountField() == null) {
+            return null;
+        }
+        JsonNode account = body.get(policy.getAccountField());
+        // Bodies without the field are left to validation; they never reach the account
+        return account != null && account.isTextual() ? account.asText().trim().toLowerCase(Locale.ROOT) : null;
+    }
+    
+    private JsonNode readJson(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void reject(HttpServletResponse response, long retryAfterMs) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterMs + 999) / 1000)));
+        writeError(response, HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded. Please try again later.");
+    }
+    
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.error(message));
+    }
+}
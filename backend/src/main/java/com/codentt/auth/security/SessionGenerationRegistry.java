@@ -0,0 +1,135 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token revocation by counter instead of by row.
+ * <p>
+ * Every access token carries the user's {@code session_generation} as its {@code gen} claim.
+ * Logging out everywhere increments that single column, which invalidates every token the
+ * user holds no matter how many sessions exist. "Log out everyone" moves a global epoch
+ * forward instead, and tokens issued before it are rejected. Both values are cached for
+ * {@code app.session.generation-cache-ttl}, which bounds how long other nodes keep accepting
+ * a revoked token.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionGenerationRegistry {
+    
+    private static final int UNKNOWN_USER = -1;
+    
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.session.generation-cache-ttl}")
+    private Long cacheTtl;
+    
+    @Value("${app.session.generation-cache-max-size}")
+    private long cacheMaxSize;
+    
+    private LoadingCache<Long, Integer> generations;
+    private volatile Instant revokedBefore = Instant.EPOCH;
+    
+    @PostConstruct
+    void init() {
+        generations = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtl))
+                .recordStats()
+                .build(new GenerationLoader());
+        CaffeineCacheMetrics.monitor(meterRegistry, generations, "auth.session-generations");
+        refreshEpoch();
+    }
+    
+    public boolean isCurrent(VerifiedToken token) {
+        if (token.getIssuedAt() != null && token.getIssuedAt().isBefore(revokedBefore)) {
+            return false;
+        }
+        if (token.getUserId() == null) {
+            // Every token this service issues names its user; one that doesn't can't be checked, so it isn't current
+            return false;
+        }
+        int tokenGeneration = token.getGeneration() != null ? token.getGeneration() : 0;
+        try {
+            return generations.get(token.getUserId()) == tokenGeneration;
+        } catch (RuntimeException e) {
+            // Same policy as the account status registry: an unreachable database must not log everyone out
+            log.warn("Could not load session generation for user {}: {}", token.getUserId(), e.getMessage());
+            return true;
+        }
+    }
+    
+    /**
+     * Loads the generations of a batch of users with one query, ahead of {@link #isCurrent} calls.
+     */
+    public void prefetch(Collection<Long> userIds) {
+        try {
+            generations.getAll(userIds);
+        } catch (RuntimeException e) {
+            log.warn("Could not load session generations: {}", e.getMessage());
+        }
+    }
+    
+    public void revokeUser(Long userId) {
+        userRepository.incrementSessionGeneration(userId);
+        generations.invalidate(userId);
+    }
+    
+    public void revokeAll() {
+        Instant now = Instant.now();
+        jdbcTemplate.update("UPDATE session_epoch SET revoked_before = ? WHERE id = 1", Timestamp.from(now));
+        revokedBefore = now;
+        generations.invalidateAll();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.session.generation-cache-ttl:5000}")
+    public void refreshEpoch() {
+        try {
+            Timestamp epoch = jdbcTemplate.queryForObject(
+                    "SELECT revoked_before FROM session_epoch WHERE id = 1", Timestamp.class);
+            revokedBefore = epoch != null ? epoch.toInstant() : Instant.EPOCH;
+        } catch (Exception e) {
+            log.warn("Could not refresh session epoch: {}", e.getMessage());
+        }
+    }
+    
+    private class GenerationLoader implements CacheLoader<Long, Integer> {
+        
+        @Override
+        public Integer load(Long userId) {
+            return userRepository.findSessionGeneration(userId).orElse(UNKNOWN_USER);
+        }
+        
+        @Override
+        public Map<Long, Integer> loadAll(Set<? extends Long> userIds) {
+            Map<Long, Integer> loaded = new HashMap<>();
+            userIds.forEach(userId -> loaded.put(userId, UNKNOWN_USER));
+            for (Object[] row : userRepository.findSessionGenerations(Set.copyOf(userIds))) {
+                loaded.put((Long) row[0], (Integer) row[1]);
+            }
+            return loaded;
+        }
+    }
+}
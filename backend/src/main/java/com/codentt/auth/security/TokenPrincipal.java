@@ -0,0 +1,21 @@
+package com.codentt.auth.security;
+
+import lombok.Value;
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.util.List;
+
+/**
+ * Principal built straight from verified JWT claims, without loading the user from the database.
+ */
+@Value
+public class TokenPrincipal implements AuthenticatedPrincipal {
+    Long userId;
+    String username;
+    List<String> roles;
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+}
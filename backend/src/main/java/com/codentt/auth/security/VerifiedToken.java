@@ -0,0 +1,28 @@
+package com.codentt.auth.security;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of a single parse-and-verify pass over a JWT.
+ * Holds everything the request pipeline needs so the token never has to be parsed again.
+ */
+@Value
+@Builder
+public class VerifiedToken {
+    String subject;
+    Long userId;
+    Integer generation; // "gen" claim; absent on tokens issued before generations existed
+    String tokenType; // "token_type" claim; null on access and refresh tokens
+    @Builder.Default
+    List<String> roles = List.of();
+    Instant issuedAt;
+    Instant expiresAt;
+    
+    public boolean isExpired() {
+        return expiresAt != null && Instant.now().isAfter(expiresAt);
+    }
+}
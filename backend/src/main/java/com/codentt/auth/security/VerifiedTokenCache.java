@@ -0,0 +1,91 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.utils.TokenHash;
+import com.codentt.auth.utils.TokenHasher;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of already-verified tokens, keyed by the SHA-256 of the raw token.
+ * Each entry lives until the token's own expiry, so a hit never outlives the token.
+ * Hit/miss/eviction counts are published as the "jwt.verified-tokens" cache metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class VerifiedTokenCache {
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${jwt.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${jwt.cache.max-size:10000}")
+    private long maxSize;
+    
+    private Cache<TokenHash, VerifiedToken> cache;
+    
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+    
+    public VerifiedToken get(String token, Function<String, VerifiedToken> verifier) {
+        if (!enabled) {
+            return verifier.apply(token);
+        }
+        TokenHash tokenHash = TokenHasher.hash(token);
+        VerifiedToken cached = cache.getIfPresent(tokenHash);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+        // Verify outside the cache so failures propagate as-is and are never cached
+        VerifiedToken verified = verifier.apply(token);
+        cache.put(tokenHash, verified);
+        return verified;
+    }
+    
+    public void invalidate(String token) {
+        cache.invalidate(TokenHasher.hash(token));
+    }
+    
+    public void invalidateSubject(String subject) {
+        cache.asMap().values().removeIf(token -> subject.equals(token.getSubject()));
+    }
+    
+    private static class TokenExpiry implements Expiry<TokenHash, VerifiedToken> {
+        
+        @Override
+        public long expireAfterCreate(TokenHash key, VerifiedToken token, long currentTime) {
+            if (token.getExpiresAt() == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(Instant.now(), token.getExpiresAt()).toNanos());
+        }
+        
+        @Override
+        public long expireAfterUpdate(TokenHash key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(TokenHash key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -5,26 +5,27 @@ import com.codentt.auth.entity.OTP;
 import com.codentt.auth.entity.User;
 import com.codentt.auth.entity.VerificationToken;
 import com.codentt.auth.exception.*;
-import com.codentt.auth.repository.OTPRepository;
 import com.codentt.auth.repository.UserRepository;
 import com.codentt.auth.repository.VerificationTokenRepository;
+import com.codentt.auth.security.AccountStatusRegistry;
+import com.codentt.auth.security.LoginPreAuthGuard;
+import com.codentt.auth.security.SessionGenerationRegistry;
+import com.codentt.auth.security.VerifiedToken;
+import com.codentt.auth.security.VerifiedTokenCache;
 import com.codentt.auth.utils.TokenGenerator;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.LockedException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -33,34 +34,31 @@ public class AuthService {
     
     private final UserRepository userRepository;
     private final VerificationTokenRepository tokenRepository;
-    private final OTPRepository otpRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final OtpStore otpStore;
+    private final OtpService otpService;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
     private final JwtService jwtService;
-    private final EmailService emailService;
-    private final SmsService smsService;
+    private final OutboxService outboxService;
     private final HumanVerificationService humanVerificationService;
+    private final ProofOfWorkService proofOfWorkService;
+    private final LoginPreAuthGuard loginPreAuthGuard;
+    private final LoginAttemptService loginAttemptService;
     private final SessionService sessionService;
+    private final AccountStatusRegistry accountStatusRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenIntrospectionService tokenIntrospectionService;
+    private final SessionGenerationRegistry sessionGenerationRegistry;
     
     @Value("${app.email-verification-expiry}")
     private Long emailVerificationExpiry;
     
-    @Value("${app.phone-otp-expiry}")
-    private Long phoneOtpExpiry;
-    
     @Value("${app.password-reset-expiry}")
     private Long passwordResetExpiry;
     
-    @Value("${app.otp-length}")
-    private int otpLength;
-    
-    @Value("${app.max-otp-retries}")
-    private int maxOtpRetries;
-    
-    // Simple in-memory rate limiting (in production, use Redis)
-    private final Map<String, AtomicInteger> rateLimitMap = new ConcurrentHashMap<>();
-    private final Map<String, Long> rateLimitTimeMap = new ConcurrentHashMap<>();
+    @Value("${app.trusted-device.enabled:true}")
+    private boolean trustedDeviceEnabled;
     
-    @Transactional
     public ApiResponse<String> register(RegisterRequest request) {
         // Check if username already exists
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -74,13 +72,19 @@ public class AuthService {
             throw new BadRequestException("Phone number already registered");
         }
         
+        // Hash before opening the transaction so no connection is held during BCrypt
+        String encodedPassword = passwordHashingService.encode(request.getPassword());
+        return transactionTemplate.execute(status -> createUnverifiedUser(request, encodedPassword));
+    }
+    
+    private ApiResponse<String> createUnverifiedUser(RegisterRequest request, String encodedPassword) {
         // Create user (not verified yet)
         User user = User.builder()
                 .username(request.getUsername())
                 .fullName(request.getFullName())
                 .email(request.getEmail())
                 .phoneNumber(request.getPhoneNumber())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(encodedPassword)
                 .emailVerified(false)
                 .phoneVerified(false)
                 .roles(Set.of(User.Role.USER))
@@ -97,125 +101,119 @@ public class AuthService {
                 .expiryDate(LocalDateTime.now().plusSeconds(emailVerificationExpiry / 1000))
                 .build();
         tokenRepository.save(verificationToken);
-        emailService.sendVerificationEmail(user.getEmail(), emailToken);
+        // Sent by the outbox dispatcher once this transaction commits
+        outboxService.enqueue(OutboxService.MessageType.VERIFICATION_EMAIL, user.getEmail(), emailToken,
+                verificationToken.getExpiryDate());
         
         // Generate and send phone OTP
-        String otpCode = TokenGenerator.generateOTP(otpLength);
-        OTP otp = OTP.builder()
-                .code(otpCode)
-                .user(user)
-                .identifier(user.getPhoneNumber())
-                .otpType(OTP.OtpType.PHONE_VERIFICATION)
-                .expiryDate(LocalDateTime.now().plusSeconds(phoneOtpExpiry / 1000))
-                .build();
-        otpRepository.save(otp);
-        smsService.sendOTP(user.getPhoneNumber(), otpCode);
+        otpService.sendPhoneVerification(user);
         
         return ApiResponse.success("Registration successful. Please verify your email and phone number.", null);
     }
     
-    @Transactional
+    // Single statement on success; the failure path reads the token back only to pick the error message
     public ApiResponse<String> verifyEmail(VerifyEmailRequest request) {
-        VerificationToken token = tokenRepository.findByToken(request.getToken())
-                .orElseThrow(() -> new BadRequestException("Invalid verification token"));
-        
-        if (!token.isValid()) {
-            throw new BadRequestException("Token expired or already used");
+        if (tokenRepository.consumeEmailVerification(request.getToken(), LocalDateTime.now()).isPresent()) {
+            return ApiResponse.success("Email verified successfully", null);
         }
         
-        User user = token.getUser();
-        user.setEmailVerified(true);
-        userRepository.save(user);
-        
-        token.setUsed(true);
-        tokenRepository.save(token);
-        
-        return ApiResponse.success("Email verified successfully", null);
+        tokenRepository.findByToken(request.getToken())
+                .filter(token -> token.getTokenType() == VerificationToken.TokenType.EMAIL_VERIFICATION)
+                .orElseThrow(() -> new BadRequestException("Invalid verification token"));
+        throw new BadRequestException("Token expired or already used");
     }
     
-    @Transactional
+    // Not transactional, so a failed attempt's retry count is kept rather than rolled back with the error
     public ApiResponse<String> verifyPhone(VerifyPhoneRequest request) {
-        User user = userRepository.findByPhoneNumber(request.getPhoneNumber())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        OTP otp = otpRepository.findByCodeAndIdentifierAndOtpType(
-                request.getOtp(), 
+        // The only active OTP for the number, by index; the code itself is compared in constant time
+        OtpStore.ActiveOtp otp = otpStore.findActive(
                 request.getPhoneNumber(), 
                 OTP.OtpType.PHONE_VERIFICATION
         ).orElseThrow(() -> new BadRequestException("Invalid OTP"));
         
-        if (!otp.isValid()) {
-            otp.incrementRetryCount();
-            otpRepository.save(otp);
+        if (!otp.valid()) {
             throw new BadRequestException("OTP expired or exceeded retry limit");
         }
         
-        if (!otp.getUser().getId().equals(user.getId())) {
-            throw new BadRequestException("OTP does not match user");
+        if (!OtpService.codeMatches(otp.code(), request.getOtp())) {
+            otpStore.recordFailedAttempt(otp);
+            throw new BadRequestException("Invalid OTP");
         }
         
-        user.setPhoneVerified(true);
-        userRepository.save(user);
-        
-        otp.setUsed(true);
-        otpRepository.save(otp);
+        if (otpStore.consumePhoneVerification(otp, LocalDateTime.now()).isPresent()) {
+            return ApiResponse.success("Phone number verified successfully", null);
+        }
         
-        return ApiResponse.success("Phone number verified successfully", null);
+        // Not consumed: the number now belongs to someone else, or a concurrent request got there first
+        User user = userRepository.findByPhoneNumber(request.getPhoneNumber())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        if (!otp.userId().equals(user.getId())) {
+            throw new BadRequestException("OTP does not match user");
+        }
+        throw new BadRequestException("OTP expired or exceeded retry limit");
     }
     
-    @Transactional
     public ApiResponse<String> resendPhoneOtp(ResendOtpRequest request) {
-        checkRateLimit("otp:" + request.getPhoneNumber(), 3, 60000); // 3 per minute
-        
         User user = userRepository.findByPhoneNumber(request.getPhoneNumber())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
         
-        String otpCode = TokenGenerator.generateOTP(otpLength);
-        OTP otp = OTP.builder()
-                .code(otpCode)
-                .user(user)
-                .identifier(user.getPhoneNumber())
-                .otpType(OTP.OtpType.PHONE_VERIFICATION)
-                .expiryDate(LocalDateTime.now().plusSeconds(phoneOtpExpiry / 1000))
-                .build();
-        otpRepository.save(otp);
-        smsService.sendOTP(user.getPhoneNumber(), otpCode);
+        // A resend right after the previous one is coalesced; the response doesn't say so, to keep clients simple
+        otpService.sendPhoneVerification(user);
         
         return ApiResponse.success("OTP sent successfully", null);
     }
     
-    public LoginChallengeResponse getLoginChallenge() {
-        return humanVerificationService.generateChallenge();
+    public LoginChallengeResponse getLoginChallenge(String ipAddress, String account) {
+        return humanVerificationService.generateChallenge(ipAddress, account);
     }
     
-    @Transactional
-    public ApiResponse<AuthResponse> login(LoginRequest request) {
-        // Validate human verification challenge
-        if (!humanVerificationService.validateChallenge(request.getChallengeToken(), request.getChallengeAnswer())) {
-            throw new UnauthorizedException("Human verification failed");
+    // Not transactional: each statement commits on its own so no connection is held during BCrypt
+    public ApiResponse<AuthResponse> login(LoginRequest request, String deviceInfo, String ipAddress) {
+        loginPreAuthGuard.check(ipAddress, request.getUsernameOrEmail());
+        
+        // A trusted-device token stands in for the challenge; its account is checked once the user is loaded
+        VerifiedToken trustedDevice = verifyTrustedDevice(request.getTrustedDeviceToken());
+        if (trustedDevice == null) {
+            verifyHuman(request, ipAddress);
         }
         
         // Find user by username or email (intelligent detection)
-        User user = findUserByUsernameOrEmail(request.getUsernameOrEmail())
-                .orElseThrow(() -> new BadCredentialsException("Invalid username/email or password"));
+        Optional<User> found = findUserByUsernameOrEmail(request.getUsernameOrEmail());
+        if (found.isEmpty()) {
+            proofOfWorkService.recordFailure(ipAddress, request.getUsernameOrEmail());
+            throw LoginRejectedException.INVALID_CREDENTIALS;
+        }
+        User user = found.get();
         
-        // Check if account is locked
-        if (!user.getAccountNonLocked()) {
-            if (user.getLockoutTime() != null && 
-                LocalDateTime.now().isBefore(user.getLockoutTime().plusMinutes(15))) {
-                throw new LockedException("Account is locked. Please try again later.");
+        if (trustedDevice != null && !trustedDevice.getUserId().equals(user.getId())) {
+            // Trusted for a different account: this login still has to pass the challenge
+            verifyHuman(request, ipAddress);
+        }
+        
+        // Check if account is locked (this node's counters are newer than the row when it has any)
+        LoginAttemptService.State attempts = loginAttemptService.state(user);
+        if (attempts.locked()) {
+            if (attempts.lockedUntil() != null && LocalDateTime.now().isBefore(attempts.lockedUntil())) {
+                loginPreAuthGuard.markLocked(attempts.lockedUntil(),
+                        request.getUsernameOrEmail(), user.getUsername(), user.getEmail());
+                throw LoginRejectedException.ACCOUNT_LOCKED;
             } else {
                 // Unlock account after lockout period
-                user.resetFailedLoginAttempts();
-                userRepository.save(user);
+                loginAttemptService.reset(user);
+                accountStatusRegistry.markUnlocked(user.getId());
             }
         }
         
         // Verify password
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            user.incrementFailedLoginAttempts();
-            userRepository.save(user);
-            throw new BadCredentialsException("Invalid credentials");
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
+            attempts = loginAttemptService.recordFailure(user);
+            if (attempts.locked()) {
+                accountStatusRegistry.markLocked(user.getId());
+                loginPreAuthGuard.markLocked(attempts.lockedUntil(),
+                        request.getUsernameOrEmail(), user.getUsername(), user.getEmail());
+            }
+            proofOfWorkService.recordFailure(ipAddress, request.getUsernameOrEmail());
+            throw LoginRejectedException.INVALID_CREDENTIALS;
         }
         
         // Check if user is fully verified
@@ -223,18 +221,24 @@ public class AuthService {
             throw new BadRequestException("Please verify your email and phone number before logging in");
         }
         
-        // Reset failed login attempts on successful login
-        user.resetFailedLoginAttempts();
-        userRepository.save(user);
+        // Reset failed login attempts on successful login; a no-op unless there were any
+        loginAttemptService.reset(user);
+        
+        rehashIfOutdated(user, request.getPassword());
         
         // Generate JWT tokens (use username as subject for consistency)
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
         claims.put("username", user.getUsername());
         claims.put("roles", user.getRoles().stream().map(Enum::name).toList());
+        claims.put("gen", user.getSessionGeneration());
         
         String accessToken = jwtService.generateToken(user.getUsername(), claims);
-        String refreshToken = jwtService.generateRefreshToken(user.getUsername());
+        String refreshToken = jwtService.generateRefreshToken(
+                user.getUsername(), user.getId(), user.getSessionGeneration());
+        String trustedDeviceToken = trustedDeviceEnabled ? jwtService.generateTrustedDeviceToken(
+                user.getUsername(), user.getId(), user.getSessionGeneration()) : null;
+        sessionService.createSession(user, accessToken, refreshToken, trustedDeviceToken, deviceInfo, ipAddress);
         
         AuthResponse.UserInfo userInfo = AuthResponse.UserInfo.builder()
                 .id(user.getId())
@@ -250,16 +254,46 @@ public class AuthService {
                 .accessToken(accessToken)
                 .refreshToken(refreshToken)
                 .expiresIn(86400L) // 24 hours in seconds
+                .trustedDeviceToken(trustedDeviceToken)
                 .user(userInfo)
                 .build();
         
         return ApiResponse.success("Login successful", authResponse);
     }
     
+    private void verifyHuman(LoginRequest request, String ipAddress) {
+        if (request.getChallengeToken() == null || request.getChallengeToken().isBlank()
+                || request.getChallengeAnswer() == null || request.getChallengeAnswer().isBlank()) {
+            throw new BadRequestException("Challenge token and answer are required");
+        }
+        if (!humanVerificationService.validateChallenge(request.getChallengeToken(), request.getChallengeAnswer(),
+                ipAddress, request.getUsernameOrEmail())) {
+            throw LoginRejectedException.HUMAN_VERIFICATION_FAILED;
+        }
+    }
+    
+    /**
+     * @return the verified token, or null if none was sent or it is forged, expired, of another type or revoked
+     */
+    private VerifiedToken verifyTrustedDevice(String token) {
+        if (!trustedDeviceEnabled || token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            VerifiedToken verified = jwtService.verifyToken(token);
+            if (!JwtService.TRUSTED_DEVICE_TOKEN_TYPE.equals(verified.getTokenType()) || verified.getUserId() == null
+                    || !sessionGenerationRegistry.isCurrent(verified) || !sessionService.isDeviceTrusted(token)) {
+                return null;
+            }
+            return verified;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Ignoring trusted-device token: {}", e.getMessage());
+            return null;
+        }
+    }
+    
     @Transactional
     public ApiResponse<String> forgotPassword(ForgotPasswordRequest request) {
-        checkRateLimit("forgot-password:" + request.getEmail(), 3, 3600000); // 3 per hour
-        
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with this email"));
         
@@ -272,49 +306,63 @@ public class AuthService {
                 .build();
         tokenRepository.save(token);
         
-        emailService.sendPasswordResetEmail(user.getEmail(), resetToken);
+        outboxService.enqueue(OutboxService.MessageType.PASSWORD_RESET_EMAIL, user.getEmail(), resetToken,
+                token.getExpiryDate());
         
         return ApiResponse.success("Password reset link sent to your email", null);
     }
     
-    @Transactional
     public ApiResponse<String> resetPassword(ResetPasswordRequest request) {
-        VerificationToken token = tokenRepository.findByToken(request.getToken())
-                .orElseThrow(() -> new BadRequestException("Invalid reset token"));
-        
-        if (!token.isValid()) {
-            throw new BadRequestException("Token expired or already used");
+        // Cheap indexed lookup first: BCrypt's bounded pool is only spent on tokens that can succeed
+        if (!tokenRepository.existsByTokenAndTokenTypeAndUsedFalseAndExpiryDateAfter(
+                request.getToken(), VerificationToken.TokenType.PASSWORD_RESET, LocalDateTime.now())) {
+            throw invalidResetToken(request.getToken());
         }
         
+        // Hash before opening the transaction so no connection is held during BCrypt
+        String encodedPassword = passwordHashingService.encode(request.getNewPassword());
+        Optional<Long> userId = tokenRepository.consumePasswordReset(request.getToken(), encodedPassword, LocalDateTime.now());
+        if (userId.isPresent()) {
+            // A new password ends every session, refresh token and trusted device issued under the old one
+            sessionGenerationRegistry.revokeUser(userId.get());
+            return ApiResponse.success("Password reset successfully", null);
+        }
+        throw invalidResetToken(request.getToken());
+    }
+    
+    private BadRequestException invalidResetToken(String resetToken) {
+        VerificationToken token = tokenRepository.findByToken(resetToken)
+                .orElseThrow(() -> new BadRequestException("Invalid reset token"));
         if (token.getTokenType() != VerificationToken.TokenType.PASSWORD_RESET) {
-            throw new BadRequestException("Invalid token type");
+            return new BadRequestException("Invalid token type");
         }
-        
-        User user = token.getUser();
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-        userRepository.save(user);
-        
-        token.setUsed(true);
-        tokenRepository.save(token);
-        
-        return ApiResponse.success("Password reset successfully", null);
+        return new BadRequestException("Token expired or already used");
     }
     
-    @Transactional
     public ApiResponse<String> logout(String token) {
         if (token != null && !token.isEmpty()) {
             // Invalidate the token in the session table
             sessionService.invalidateToken(token);
+            verifiedTokenCache.invalidate(token);
+            tokenIntrospectionService.evict(token);
         }
         return ApiResponse.success("Logged out successfully", null);
     }
     
-    @Transactional
     public ApiResponse<String> logoutAll(String token) {
         if (token != null && !token.isEmpty()) {
             try {
-                String username = jwtService.extractUsername(token);
-                sessionService.invalidateAllUserSessions(username);
+                VerifiedToken verified = verifiedTokenCache.get(token, jwtService::verifyToken);
+                String username = verified.getSubject();
+                // One-row increment; every token carrying the old generation stops validating
+                Long userId = verified.getUserId() != null
+                        ? verified.getUserId()
+                        : userRepository.findByUsername(username).map(User::getId).orElse(null);
+                if (userId != null) {
+                    sessionGenerationRegistry.revokeUser(userId);
+                }
+                verifiedTokenCache.invalidateSubject(username);
+                tokenIntrospectionService.evictSubject(username);
             } catch (Exception e) {
                 log.error("Error during logout all", e);
             }
@@ -322,6 +370,36 @@ public class AuthService {
         return ApiResponse.success("Logged out from all devices successfully", null);
     }
     
+    public ApiResponse<String> logoutUser(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        sessionGenerationRegistry.revokeUser(user.getId());
+        verifiedTokenCache.invalidateSubject(user.getUsername());
+        tokenIntrospectionService.evictSubject(user.getUsername());
+        return ApiResponse.success("User logged out from all devices", null);
+    }
+    
+    public ApiResponse<String> logoutEveryone() {
+        sessionGenerationRegistry.revokeAll();
+        tokenIntrospectionService.evictAll();
+        return ApiResponse.success("All users logged out", null);
+    }
+    
+    /**
+     * Re-encodes the password when the stored hash predates the current cost factor.
+     * Best effort: a busy hashing pool must not fail an otherwise successful login.
+     */
+    private void rehashIfOutdated(User user, String rawPassword) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            userRepository.updatePassword(user.getId(), passwordHashingService.encode(rawPassword));
+        } catch (ServiceUnavailableException e) {
+            log.debug("Skipping password rehash for user {}: hashing pool busy", user.getId());
+        }
+    }
+    
     /**
      * Intelligently finds user by username or email
      * Detects if the input is an email (contains @) or username
@@ -344,20 +422,6 @@ public class AuthService {
             return userRepository.findByEmail(identifier);
         }
     }
-    
-    private void checkRateLimit(String key, int maxRequests, long windowMs) {
-        long now = System.currentTimeMillis();
-        AtomicInteger count = rateLimitMap.computeIfAbsent(key, k -> new AtomicInteger(0));
-        Long windowStart = rateLimitTimeMap.get(key);
-        
-        if (windowStart == null || (now - windowStart) > windowMs) {
-            count.set(0);
-            rateLimitTimeMap.put(key, now);
-        }
-        
-        if (count.incrementAndGet() > maxRequests) {
-            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.");
-        }
-    }
+
 }
 
@@ -0,0 +1,102 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.LoginChallenge;
+import com.codentt.auth.exception.BadRequestException;
+import com.codentt.auth.exception.UnauthorizedException;
+import com.codentt.auth.repository.LoginChallengeRepository;
+import com.codentt.auth.utils.ProofOfWork;
+import com.codentt.auth.utils.TokenGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One {@code login_challenges} row per challenge, allowing up to three attempts each.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.login-challenge.mode", havingValue = "database")
+public class DatabaseLoginChallengeStore implements LoginChallengeStore {
+    
+    private final LoginChallengeRepository challengeRepository;
+    private final ObjectMapper objectMapper;
+    
+    @Override
+    @Transactional
+    public String issue(LoginChallenge.ChallengeType type, String question, List<String> options,
+                        List<String> correctAnswer, int difficulty, LocalDateTime expiresAt) {
+        String challengeToken = TokenGenerator.generateSecureToken(32);
+        
+        LoginChallenge challenge = LoginChallenge.builder()
+                .challengeToken(challengeToken)
+                .challengeType(type)
+                .question(question)
+                .correctAnswer(serializeList(correctAnswer))
+                .options(serializeList(options))
+                .difficulty(type == LoginChallenge.ChallengeType.PROOF_OF_WORK ? difficulty : null)
+                .expiryDate(expiresAt)
+                .build();
+        
+        challengeRepository.save(challenge);
+        return challengeToken;
+    }
+    
+    @Override
+    @Transactional
+    public boolean verify(String challengeToken, List<String> answer, int minDifficulty) {
+        LoginChallenge challenge = challengeRepository.findByChallengeToken(challengeToken)
+                .orElseThrow(() -> new BadRequestException("Invalid challenge token"));
+        
+        if (!challenge.isValid()) {
+            challenge.incrementAttemptCount();
+            challengeRepository.save(challenge);
+            throw new UnauthorizedException("Challenge expired or exceeded attempts");
+        }
+        
+        challenge.incrementAttemptCount();
+        challengeRepository.save(challenge);
+        
+        if (answer == null) {
+            return false;
+        }
+        if (challenge.getChallengeType() == LoginChallenge.ChallengeType.PROOF_OF_WORK) {
+            int difficulty = challenge.getDifficulty();
+            return difficulty >= minDifficulty && answer.size() == 1
+                    && ProofOfWork.isSolved(challengeToken, answer.get(0), difficulty);
+        }
+        if (minDifficulty > 0) {
+            return false;
+        }
+        List<String> correctAnswers = deserializeList(challenge.getCorrectAnswer());
+        
+        // For sentence arrangement, order matters
+        if (challenge.getChallengeType() == LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT) {
+            return correctAnswers.equals(answer);
+        } else {
+            // For selection types, check if answer is in correct answers
+            return correctAnswers.containsAll(answer) && answer.size() == 1;
+        }
+    }
+    
+    private String serializeList(List<String> list) {
+        try {
+            return objectMapper.writeValueAsString(list);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize list", e);
+        }
+    }
+    
+    private List<String> deserializeList(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize list", e);
+        }
+    }
+}
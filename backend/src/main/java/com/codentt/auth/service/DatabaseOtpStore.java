@@ -0,0 +1,58 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.OTP;
+import com.codentt.auth.repository.OTPRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * One {@code otps} row per active OTP, kept unique by a partial index and upserted in place.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseOtpStore implements OtpStore {
+    
+    private final OTPRepository otpRepository;
+    
+    @Value("${app.max-otp-retries}")
+    private int maxOtpRetries;
+    
+    @Override
+    public Optional<String> issue(Long userId, String identifier, OTP.OtpType type, String freshCode,
+                                  long ttlMillis, long cooldownMillis) {
+        LocalDateTime now = LocalDateTime.now();
+        OTPRepository.IssuedOtp issued = otpRepository.upsertActive(
+                freshCode,
+                userId,
+                identifier,
+                type.name(),
+                now.plusSeconds(ttlMillis / 1000),
+                now,
+                now.minusSeconds(cooldownMillis / 1000),
+                maxOtpRetries);
+        return Boolean.TRUE.equals(issued.getSend()) ? Optional.of(issued.getCode()) : Optional.empty();
+    }
+    
+    @Override
+    public Optional<ActiveOtp> findActive(String identifier, OTP.OtpType type) {
+        return otpRepository.findByIdentifierAndOtpTypeAndUsedFalse(identifier, type)
+                .map(otp -> new ActiveOtp(otp.getId(), otp.getUser().getId(), otp.getIdentifier(),
+                        otp.getOtpType(), otp.getCode(), otp.isValid(maxOtpRetries)));
+    }
+    
+    @Override
+    public void recordFailedAttempt(ActiveOtp otp) {
+        otpRepository.incrementRetryCount(otp.id());
+    }
+    
+    @Override
+    public Optional<Long> consumePhoneVerification(ActiveOtp otp, LocalDateTime now) {
+        return otpRepository.consumePhoneVerification(otp.id(), now, maxOtpRetries);
+    }
+}
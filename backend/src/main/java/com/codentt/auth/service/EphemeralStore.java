@@ -0,0 +1,139 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.utils.ExpiringMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory home for short-lived secrets, used by the OTP and login-challenge stores in
+ * {@code memory} mode.
+ * <p>
+ * Each named map expires its entries through a timing wheel advanced every
+ * {@code app.ephemeral-store.tick}, so nothing is ever swept. Contents are per node, which suits
+ * single-node or sticky deployments. When {@code app.ephemeral-store.snapshot-file} is set, live
+ * entries are written there (owner-only) on shutdown and read back, then deleted, on startup, so
+ * a restart doesn't void codes already sent. A crash loses them; users just ask for a new one.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EphemeralStore {
+    
+    private static final ObjectInputFilter SNAPSHOT_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=8;com.codentt.auth.**;java.lang.*;java.util.*;!*");
+    
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.ephemeral-store.tick}")
+    private Long tick;
+    
+    @Value("${app.ephemeral-store.snapshot-file:}")
+    private String snapshotFile;
+    
+    private final ConcurrentMap<String, ExpiringMap<String, ?>> maps = new ConcurrentHashMap<>();
+    private Map<String, Map<String, Object>> restored = Map.of();
+    
+    @PostConstruct
+    void init() {
+        Gauge.builder("auth.ephemeral.entries", maps,
+                        all -> all.values().stream().mapToInt(ExpiringMap::size).sum())
+                .register(meterRegistry);
+        restore();
+    }
+    
+    /**
+     * The map registered under {@code name}, created on first use with any entries restored for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <V extends ExpiringMap.Expiring & Serializable> ExpiringMap<String, V> map(String name) {
+        return (ExpiringMap<String, V>) maps.computeIfAbsent(name, n -> {
+            ExpiringMap<String, V> map = new ExpiringMap<>(tick);
+            long now = System.currentTimeMillis();
+            restored.getOrDefault(n, Map.of()).forEach((key, value) -> {
+                V entry = (V) value;
+                if (entry.expiresAt() > now) {
+                    map.put(key, entry);
+                }
+            });
+            return map;
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${app.ephemeral-store.tick}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        maps.values().forEach(map -> map.expire(now));
+    }
+    
+    @PreDestroy
+    void snapshot() {
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        HashMap<String, HashMap<String, Object>> contents = new HashMap<>();
+        maps.forEach((name, map) -> contents.put(name, new HashMap<>(map.snapshot())));
+        Path path = Path.of(snapshotFile);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(temporary, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeObject(contents);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} ephemeral entries to {}", contents.values().stream().mapToInt(Map::size).sum(), path);
+        } catch (IOException e) {
+            log.warn("Could not write ephemeral store snapshot to {}: {}", path, e.getMessage());
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void restore() {
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(snapshotFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            in.setObjectInputFilter(SNAPSHOT_FILTER);
+            restored = (Map<String, Map<String, Object>>) in.readObject();
+            log.info("Restored ephemeral store snapshot from {}", path);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Ignoring unreadable ephemeral store snapshot {}: {}", path, e.getMessage());
+        }
+        try {
+            // Restored once only: a later crash must not bring back codes that have since been used
+            Files.delete(path);
+        } catch (IOException e) {
+            log.warn("Could not delete ephemeral store snapshot {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.codentt.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purges expired rows from the short-lived auth tables.
+ * <p>
+ * Deletes run in chunks of {@code app.reaper.batch-size} rows picked through the expiry index,
+ * each chunk in its own short transaction, with a pause in between so autovacuum and normal
+ * traffic keep up. Rows another transaction holds are skipped, never waited on. A run stops
+ * after {@code app.reaper.max-duration} per table and resumes on the next tick, so lock times
+ * stay flat however large the backlog is. The age of the oldest expired row is published as
+ * {@code auth.reaper.lag}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpiryReaperService {
+    
+    // user_sessions and login_challenges are partitioned and cleaned by PartitionMaintenanceService
+    private static final List<Target> TARGETS = List.of(
+            new Target("otps", "expiry_date"),
+            new Target("verification_tokens", "expiry_date"),
+            new Target("outbox_messages", "expires_at"),
+            new Target("trusted_devices", "expires_at")
+    );
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final JobCoordinationService jobCoordinationService;
+    
+    @Value("${app.reaper.batch-size}")
+    private int batchSize;
+    
+    @Value("${app.reaper.pause}")
+    private long pause;
+    
+    @Value("${app.reaper.max-duration}")
+    private long maxDuration;
+    
+    private final Map<String, AtomicLong> lagSeconds = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    void registerMetrics() {
+        for (Target target : TARGETS) {
+            AtomicLong lag = new AtomicLong();
+            lagSeconds.put(target.table, lag);
+            Gauge.builder("auth.reaper.lag", lag, AtomicLong::get)
+                    .tag("table", target.table)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.reaper.interval:300000}", initialDelayString = "${app.reaper.interval:300000}")
+    public void reap() {
+        jobCoordinationService.runExclusively("expiry-reaper", this::reapAll);
+    }
+    
+    private void reapAll() {
+        for (Target target : TARGETS) {
+            try {
+                reap(target);
+            } catch (DataAccessException e) {
+                log.warn("Expiry reaper failed on {}: {}", target.table, e.getMessage());
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+    
+    private void reap(Target target) {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now());
+        long deadline = System.currentTimeMillis() + maxDuration;
+        Counter purged = meterRegistry.counter("auth.reaper.purged", "table", target.table);
+        
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(target.deleteChunkSql(), cutoff, batchSize);
+            total += deleted;
+            purged.increment(deleted);
+        } while (deleted == batchSize && System.currentTimeMillis() < deadline && pause());
+        
+        updateLag(target, cutoff);
+        if (total > 0) {
+            log.info("Purged {} expired rows from {}", total, target.table);
+        }
+    }
+    
+    private void updateLag(Target target, Timestamp cutoff) {
+        Timestamp oldest = jdbcTemplate.queryForObject(target.oldestSql(), Timestamp.class);
+        long lag = oldest != null && oldest.before(cutoff)
+                ? Duration.between(oldest.toLocalDateTime(), cutoff.toLocalDateTime()).getSeconds()
+                : 0;
+        lagSeconds.get(target.table).set(lag);
+    }
+    
+    private boolean pause() {
+        try {
+            Thread.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private static final class Target {
+        final String table;
+        final String expiryColumn;
+        
+        Target(String table, String expiryColumn) {
+            this.table = table;
+            this.expiryColumn = expiryColumn;
+        }
+        
+        String deleteChunkSql() {
+            return "DELETE FROM " + table + " WHERE id IN (SELECT id FROM " + table
+                    + " WHERE " + expiryColumn + " < ? ORDER BY " + expiryColumn
+                    + " LIMIT ? FOR UPDATE SKIP LOCKED)";
+        }
+        
+        String oldestSql() {
+            return "SELECT MIN(" + expiryColumn + ") FROM " + table;
+        }
+    }
+}
@@ -2,27 +2,24 @@ package com.codentt.auth.service;
 
 import com.codentt.auth.dto.LoginChallengeResponse;
 import com.codentt.auth.entity.LoginChallenge;
-import com.codentt.auth.exception.BadRequestException;
-import com.codentt.auth.exception.UnauthorizedException;
-import com.codentt.auth.repository.LoginChallengeRepository;
-import com.codentt.auth.utils.TokenGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class HumanVerificationService {
     
-    private final LoginChallengeRepository challengeRepository;
+    private final LoginChallengeStore challengeStore;
+    private final ProofOfWorkService proofOfWorkService;
     private final ObjectMapper objectMapper;
     
     @Value("${app.login-challenge-expiry}")
@@ -53,12 +50,21 @@ public class HumanVerificationService {
                          Collections.singletonList("Statement"))
     );
     
-    @Transactional
-    public LoginChallengeResponse generateChallenge() {
-        Random random = new Random();
-        LoginChallenge.ChallengeType type = LoginChallenge.ChallengeType.values()[
-            random.nextInt(LoginChallenge.ChallengeType.values().length)
-        ];
+    // Proof of work is only handed out when recent failures call for it
+    private static final LoginChallenge.ChallengeType[] QUESTION_TYPES = {
+        LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT,
+        LoginChallenge.ChallengeType.INTENT_SELECTION,
+        LoginChallenge.ChallengeType.IMAGE_MATCH
+    };
+    
+    public LoginChallengeResponse generateChallenge(String ipAddress, String account) {
+        int difficulty = proofOfWorkService.requiredDifficulty(ipAddress, account);
+        if (difficulty > 0) {
+            return generateProofOfWork(difficulty);
+        }
+        
+        Random random = ThreadLocalRandom.current();
+        LoginChallenge.ChallengeType type = QUESTION_TYPES[random.nextInt(QUESTION_TYPES.length)];
         
         ChallengeData challengeData;
         if (type == LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT) {
@@ -75,22 +81,12 @@ public class HumanVerificationService {
         // Shuffle options for sentence arrangement
         List<String> options = new ArrayList<>(challengeData.options);
         if (type == LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT) {
-            Collections.shuffle(options);
+            Collections.shuffle(options, random);
         }
         
-        String challengeToken = TokenGenerator.generateSecureToken(32);
         LocalDateTime expiryDate = LocalDateTime.now().plusSeconds(challengeExpiry / 1000);
-        
-        LoginChallenge challenge = LoginChallenge.builder()
-                .challengeToken(challengeToken)
-                .challengeType(type)
-                .question(challengeData.question)
-                .correctAnswer(serializeList(challengeData.correctAnswer))
-                .options(serializeList(options))
-                .expiryDate(expiryDate)
-                .build();
-        
-        challengeRepository.save(challenge);
+        String challengeToken = challengeStore.issue(
+                type, challengeData.question, options, challengeData.correctAnswer, 0, expiryDate);
         
         return LoginChallengeResponse.builder()
                 .challengeToken(challengeToken)
@@ -101,50 +97,46 @@ public class HumanVerificationService {
                 .build();
     }
     
-    @Transactional
-    public boolean validateChallenge(String challengeToken, String answer) {
-        LoginChallenge challenge = challengeRepository.findByChallengeToken(challengeToken)
-                .orElseThrow(() -> new BadRequestException("Invalid challenge token"));
-        
-        if (!challenge.isValid()) {
-            challenge.incrementAttemptCount();
-            challengeRepository.save(challenge);
-            throw new UnauthorizedException("Challenge expired or exceeded attempts");
-        }
+    private LoginChallengeResponse generateProofOfWork(int difficulty) {
+        String question = "Find a string s such that SHA-256(nonce + \":\" + s) starts with "
+                + difficulty + " zero bits";
+        // Harder puzzles get longer to live, so a slow phone can still finish one
+        long expiresIn = (challengeExpiry + proofOfWorkService.solveAllowanceMillis(difficulty)) / 1000;
+        LocalDateTime expiryDate = LocalDateTime.now().plusSeconds(expiresIn);
+        String challengeToken = challengeStore.issue(LoginChallenge.ChallengeType.PROOF_OF_WORK,
+                question, List.of(), List.of(), difficulty, expiryDate);
         
-        challenge.incrementAttemptCount();
-        challengeRepository.save(challenge);
-        
-        try {
-            List<String> correctAnswers = deserializeList(challenge.getCorrectAnswer());
-            List<String> userAnswers = deserializeList(answer);
-            
-            // For sentence arrangement, order matters
-            if (challenge.getChallengeType() == LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT) {
-                return correctAnswers.equals(userAnswers);
-            } else {
-                // For selection types, check if answer is in correct answers
-                return correctAnswers.containsAll(userAnswers) && userAnswers.size() == 1;
-            }
-        } catch (Exception e) {
-            log.error("Error validating challenge", e);
-            return false;
-        }
+        return LoginChallengeResponse.builder()
+                .challengeToken(challengeToken)
+                .challengeType(LoginChallenge.ChallengeType.PROOF_OF_WORK.name())
+                .question(question)
+                .options(List.of())
+                .nonce(challengeToken)
+                .difficulty(difficulty)
+                .expiresIn(expiresIn)
+                .build();
     }
     
-    private String serializeList(List<String> list) {
-        try {
-            return objectMapper.writeValueAsString(list);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to serialize list", e);
+    /**
+     * While the IP or account is under suspicion only a proof-of-work challenge of the currently
+     * required difficulty passes, so a cheap challenge fetched elsewhere can't be reused. Every
+     * failed answer counts towards that suspicion.
+     */
+    public boolean validateChallenge(String challengeToken, String answer, String ipAddress, String account) {
+        int minDifficulty = proofOfWorkService.requiredDifficulty(ipAddress, account);
+        boolean valid = challengeStore.verify(challengeToken, parseAnswer(answer), minDifficulty);
+        if (!valid) {
+            proofOfWorkService.recordFailure(ipAddress, account);
         }
+        return valid;
     }
     
-    private List<String> deserializeList(String json) {
+    private List<String> parseAnswer(String answer) {
         try {
-            return objectMapper.readValue(json, new TypeReference<List<String>>() {});
+            return objectMapper.readValue(answer, new TypeReference<List<String>>() {});
         } catch (Exception e) {
-            throw new RuntimeException("Failed to deserialize list", e);
+            log.debug("Unparsable challenge answer: {}", e.getMessage());
+            return null;
         }
     }
     
@@ -0,0 +1,73 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.LoginChallenge;
+import com.codentt.auth.exception.UnauthorizedException;
+import com.codentt.auth.utils.ExpiringMap;
+import com.codentt.auth.utils.ProofOfWork;
+import com.codentt.auth.utils.TokenGenerator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Challenges kept in the {@link EphemeralStore} under a random token, allowing a single attempt
+ * each. Answering removes the challenge, so a token that is unknown, already answered or expired
+ * is rejected the same way. State is per node, as in the stateless mode.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.login-challenge.mode", havingValue = "memory")
+public class InMemoryLoginChallengeStore implements LoginChallengeStore {
+    
+    private final EphemeralStore ephemeralStore;
+    
+    private ExpiringMap<String, StoredChallenge> challenges;
+    
+    @PostConstruct
+    void init() {
+        challenges = ephemeralStore.map("login-challenges");
+    }
+    
+    @Override
+    public String issue(LoginChallenge.ChallengeType type, String question, List<String> options,
+                        List<String> correctAnswer, int difficulty, LocalDateTime expiresAt) {
+        String challengeToken = TokenGenerator.generateSecureToken(32);
+        challenges.put(challengeToken, new StoredChallenge(type, List.copyOf(correctAnswer), difficulty,
+                expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        return challengeToken;
+    }
+    
+    @Override
+    public boolean verify(String challengeToken, List<String> answer, int minDifficulty) {
+        StoredChallenge challenge = challenges.remove(challengeToken);
+        if (challenge == null) {
+            throw new UnauthorizedException("Challenge expired or exceeded attempts");
+        }
+        
+        if (answer == null) {
+            return false;
+        }
+        if (challenge.type() == LoginChallenge.ChallengeType.PROOF_OF_WORK) {
+            return challenge.difficulty() >= minDifficulty && answer.size() == 1
+                    && ProofOfWork.isSolved(challengeToken, answer.get(0), challenge.difficulty());
+        }
+        if (minDifficulty > 0) {
+            return false;
+        }
+        // For sentence arrangement, order matters; selection types have exactly one correct option
+        if (challenge.type() == LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT) {
+            return challenge.correctAnswer().equals(answer);
+        }
+        return answer.size() == 1 && challenge.correctAnswer().containsAll(answer);
+    }
+    
+    private record StoredChallenge(LoginChallenge.ChallengeType type, List<String> correctAnswer,
+                                   int difficulty, long expiresAt) implements ExpiringMap.Expiring, Serializable {
+    }
+}
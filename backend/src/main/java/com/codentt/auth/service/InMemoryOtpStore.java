@@ -0,0 +1,91 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.OTP;
+import com.codentt.auth.repository.UserRepository;
+import com.codentt.auth.utils.ExpiringMap;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Active OTPs kept in the {@link EphemeralStore}, keyed by type and identifier, with the same
+ * keep, coalesce or rotate rules as the database store. Only marking the phone verified touches
+ * the database. State is per node, so use this only on a single node or with sticky sessions.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+    
+    private final EphemeralStore ephemeralStore;
+    private final UserRepository userRepository;
+    
+    @Value("${app.max-otp-retries}")
+    private int maxOtpRetries;
+    
+    private ExpiringMap<String, StoredOtp> otps;
+    
+    @PostConstruct
+    void init() {
+        otps = ephemeralStore.map("otps");
+    }
+    
+    @Override
+    public Optional<String> issue(Long userId, String identifier, OTP.OtpType type, String freshCode,
+                                  long ttlMillis, long cooldownMillis) {
+        long now = System.currentTimeMillis();
+        StoredOtp issued = otps.compute(key(identifier, type), (key, current) -> {
+            if (current == null || !current.userId().equals(userId) || current.retryCount() >= maxOtpRetries) {
+                return new StoredOtp(userId, freshCode, now + ttlMillis, 0, now);
+            }
+            return current.lastSentAt() > now - cooldownMillis ? current : current.sentAt(now);
+        });
+        return issued.lastSentAt() == now ? Optional.of(issued.code()) : Optional.empty();
+    }
+    
+    @Override
+    public Optional<ActiveOtp> findActive(String identifier, OTP.OtpType type) {
+        return Optional.ofNullable(otps.get(key(identifier, type)))
+                .map(otp -> new ActiveOtp(null, otp.userId(), identifier, type, otp.code(),
+                        otp.retryCount() < maxOtpRetries));
+    }
+    
+    @Override
+    public void recordFailedAttempt(ActiveOtp otp) {
+        // Only counts against the code that was guessed at; a rotated code starts afresh
+        otps.compute(key(otp.identifier(), otp.type()), (key, current) ->
+                current != null && current.code().equals(otp.code()) ? current.failedAttempt() : current);
+    }
+    
+    @Override
+    public Optional<Long> consumePhoneVerification(ActiveOtp otp, LocalDateTime now) {
+        boolean consumed = otps.removeIf(key(otp.identifier(), otp.type()),
+                current -> current.code().equals(otp.code()) && current.retryCount() < maxOtpRetries);
+        if (!consumed || userRepository.markPhoneVerified(otp.userId(), otp.identifier(), now) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(otp.userId());
+    }
+    
+    private static String key(String identifier, OTP.OtpType type) {
+        return type.name() + ':' + identifier;
+    }
+    
+    private record StoredOtp(Long userId, String code, long expiresAt, int retryCount, long lastSentAt)
+            implements ExpiringMap.Expiring, Serializable {
+        
+        StoredOtp sentAt(long now) {
+            return new StoredOtp(userId, code, expiresAt, retryCount, now);
+        }
+        
+        StoredOtp failedAttempt() {
+            return new StoredOtp(userId, code, expiresAt, retryCount + 1, lastSentAt);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.config.RateLimitProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token buckets, one per (policy, key).
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the "theoretical arrival time" of the
+ * generic cell rate algorithm, which is equivalent to a token bucket of {@code capacity} tokens
+ * refilled evenly over {@code period}. Acquiring is one CAS, so hot keys never block each other.
+ * A bucket whose arrival time is in the past is full and carries no state, so idle buckets are
+ * dropped by a periodic sweep.
+ * <p>
+ * State is per node, so with N nodes behind a load balancer each limit is effectively N times
+ * higher; use the postgres backend there.
+ */
+@Service
+@ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitBackend implements RateLimitBackend {
+    
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    
+    @Override
+    public long tryAcquire(RateLimitProperties.Policy policy, String key) {
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(policy.getPeriod());
+        long intervalNanos = periodNanos / Math.max(1, policy.getCapacity());
+        AtomicLong bucket = buckets.computeIfAbsent(policy.getName() + ':' + key, k -> new AtomicLong(Long.MIN_VALUE));
+        
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = bucket.get();
+            long next = (arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > periodNanos) {
+                return TimeUnit.NANOSECONDS.toMillis(ahead - periodNanos) + 1;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() == Long.MIN_VALUE || bucket.get() - now < 0);
+    }
+    
+    @Override
+    public int size() {
+        return buckets.size();
+    }
+}
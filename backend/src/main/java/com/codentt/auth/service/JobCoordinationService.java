@@ -0,0 +1,184 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.dto.JobStatusResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs cluster-wide scheduled jobs on one node at a time, using leases in {@code scheduler_leases}.
+ * <p>
+ * Every node keeps its own {@code @Scheduled} trigger; on each tick the job only runs if this node
+ * holds, or can take, the job's lease. The holder renews its leases on a heartbeat, including while
+ * a job is running, so leadership is sticky and the job runs once per interval. If the holder dies
+ * its lease lapses after {@code app.scheduler.lease-duration} and the next node to tick takes over.
+ * All lease times use the database clock, so node clock skew doesn't matter.
+ * <p>
+ * Work that only touches node-local state (caches, write buffers) must not go through here.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobCoordinationService {
+    
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO scheduler_leases (job_name, owner, lease_until, acquired_at)
+            VALUES (?, ?, now() + ? * INTERVAL '1 millisecond', now())
+            ON CONFLICT (job_name) DO UPDATE
+            SET owner = EXCLUDED.owner,
+                lease_until = EXCLUDED.lease_until,
+                acquired_at = CASE WHEN scheduler_leases.owner = EXCLUDED.owner
+                                   THEN scheduler_leases.acquired_at ELSE EXCLUDED.acquired_at END
+            WHERE scheduler_leases.owner = EXCLUDED.owner OR scheduler_leases.lease_until < now()
+            """;
+    private static final String RENEW_SQL =
+            "UPDATE scheduler_leases SET lease_until = now() + ? * INTERVAL '1 millisecond' WHERE job_name = ? AND owner = ?";
+    private static final String RECORD_RUN_SQL = """
+            UPDATE scheduler_leases
+            SET last_started_at = now() - ? * INTERVAL '1 millisecond', last_finished_at = now(), last_duration_ms = ?,
+                last_status = ?, last_error = ?, run_count = run_count + 1
+            WHERE job_name = ?
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.scheduler.lease-duration}")
+    private long leaseDuration;
+    
+    @Value("${app.scheduler.node-id:}")
+    private String configuredNodeId;
+    
+    private final Set<String> heldLeases = ConcurrentHashMap.newKeySet();
+    private String nodeId;
+    
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId != null && !configuredNodeId.isBlank() ? configuredNodeId : defaultNodeId();
+        log.info("Scheduler node id: {}", nodeId);
+    }
+    
+    /**
+     * Runs {@code task} if this node holds the lease for {@code jobName}; otherwise does nothing.
+     * Failures are logged and recorded in the job status, never rethrown into the scheduler.
+     */
+    public void runExclusively(String jobName, Runnable task) {
+        if (!tryAcquire(jobName)) {
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        String status = "SUCCEEDED";
+        String error = null;
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            status = "FAILED";
+            error = e.getMessage();
+            log.error("Scheduled job {} failed", jobName, e);
+        }
+        
+        long duration = System.currentTimeMillis() - start;
+        try {
+            jdbcTemplate.update(RECORD_RUN_SQL, duration, duration, status, error, jobName);
+        } catch (DataAccessException e) {
+            log.warn("Could not record run of job {}: {}", jobName, e.getMessage());
+        }
+    }
+    
+    private boolean tryAcquire(String jobName) {
+        try {
+            boolean acquired = jdbcTemplate.update(ACQUIRE_SQL, jobName, nodeId, leaseDuration) == 1;
+            if (acquired && heldLeases.add(jobName)) {
+                log.info("Node {} is now running job {}", nodeId, jobName);
+            } else if (!acquired) {
+                heldLeases.remove(jobName);
+            }
+            return acquired;
+        } catch (DataAccessException e) {
+            // Without the database there is no safe way to know who leads; skip this tick
+            log.warn("Could not acquire lease for job {}: {}", jobName, e.getMessage());
+            return false;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.scheduler.heartbeat-interval:20000}")
+    public void renewLeases() {
+        for (String jobName : heldLeases) {
+            try {
+                if (jdbcTemplate.update(RENEW_SQL, leaseDuration, jobName, nodeId) == 0) {
+                    heldLeases.remove(jobName);
+                    log.warn("Lost lease for job {}", jobName);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not renew lease for job {}: {}", jobName, e.getMessage());
+            }
+        }
+    }
+    
+    public List<JobStatusResponse> jobStatuses() {
+        return jdbcTemplate.query(
+                "SELECT *, lease_until > now() AS lease_active FROM scheduler_leases ORDER BY job_name",
+                (rs, rowNum) -> toStatus(rs));
+    }
+    
+    @PreDestroy
+    void releaseLeases() {
+        // Let another node take over on its next tick instead of waiting for the lease to lapse
+        for (String jobName : heldLeases) {
+            try {
+                jdbcTemplate.update("UPDATE scheduler_leases SET lease_until = now() WHERE job_name = ? AND owner = ?",
+                        jobName, nodeId);
+            } catch (DataAccessException e) {
+                log.warn("Could not release lease for job {}: {}", jobName, e.getMessage());
+            }
+        }
+    }
+    
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        // The suffix keeps two instances on one host apart
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    private static JobStatusResponse toStatus(ResultSet rs) throws SQLException {
+        return JobStatusResponse.builder()
+                .jobName(rs.getString("job_name"))
+                .owner(rs.getString("owner"))
+                .leaseActive(rs.getBoolean("lease_active"))
+                .leaseUntil(toLocalDateTime(rs.getTimestamp("lease_until")))
+                .acquiredAt(toLocalDateTime(rs.getTimestamp("acquired_at")))
+                .lastStartedAt(toLocalDateTime(rs.getTimestamp("last_started_at")))
+                .lastFinishedAt(toLocalDateTime(rs.getTimestamp("last_finished_at")))
+                .lastDurationMs(rs.getObject("last_duration_ms", Long.class))
+                .lastStatus(rs.getString("last_status"))
+                .lastError(rs.getString("last_error"))
+                .runCount(rs.getLong("run_count"))
+                .build();
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.JwtSigningKey;
+import com.codentt.auth.repository.JwtSigningKeyRepository;
+import com.codentt.auth.utils.TokenGenerator;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Asymmetric key ring for JWT signing.
+ * <p>
+ * Keys live in {@code jwt_signing_keys} so every node signs with the same key and can verify
+ * tokens issued by any other node. A new key is published in the JWKS {@code jwt.key-publish-ahead}
+ * before it starts signing, and a retired key stays available for verification until every token
+ * it could have signed has expired. Private keys are stored AES-GCM encrypted with a key derived
+ * from {@code jwt.secret}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JwtKeyRingService {
+    
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final long MIN_REFRESH_INTERVAL_MS = 10_000;
+    
+    private final JwtSigningKeyRepository keyRepository;
+    private final JobCoordinationService jobCoordinationService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${jwt.secret}")
+    private String secret;
+    
+    @Value("${jwt.algorithm:HS256}")
+    private String algorithm;
+    
+    @Value("${jwt.key-rotation-interval}")
+    private Long rotationInterval;
+    
+    @Value("${jwt.key-publish-ahead}")
+    private Long publishAhead;
+    
+    @Value("${jwt.refresh-expiration}")
+    private Long refreshExpiration;
+    
+    @Value("${jwt.trusted-device-expiration}")
+    private Long trustedDeviceExpiration;
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    private volatile List<LoadedKey> keys = List.of();
+    private volatile long lastRefreshMillis;
+    
+    public boolean isAsymmetric() {
+        return !"HS256".equalsIgnoreCase(algorithm);
+    }
+    
+    @PostConstruct
+    void init() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        refresh();
+        if (keys.isEmpty()) {
+            createKey(LocalDateTime.now());
+            refresh();
+        }
+    }
+    
+    /**
+     * Newest key whose activation time has passed. Falls back to the newest key so a
+     * freshly bootstrapped ring can sign immediately.
+     */
+    public LoadedKey currentSigningKey() {
+        LocalDateTime now = LocalDateTime.now();
+        List<LoadedKey> snapshot = keys;
+        return snapshot.stream()
+                .filter(key -> !key.getActivatesAt().isAfter(now))
+                .max(Comparator.comparing(LoadedKey::getActivatesAt))
+                .or(() -> snapshot.stream().max(Comparator.comparing(LoadedKey::getActivatesAt)))
+                .orElseThrow(() -> new IllegalStateException("No JWT signing key available"));
+    }
+    
+    public Optional<PublicKey> verificationKey(String kid) {
+        Optional<LoadedKey> key = keys.stream().filter(k -> k.getKid().equals(kid)).findFirst();
+        if (key.isEmpty() && isAsymmetric()
+                && System.currentTimeMillis() - lastRefreshMillis > MIN_REFRESH_INTERVAL_MS) {
+            // A peer may have rotated since our last refresh; throttled so unknown kids can't hammer the DB
+            refresh();
+            key = keys.stream().filter(k -> k.getKid().equals(kid)).findFirst();
+        }
+        return key.map(LoadedKey::getPublicKey);
+    }
+    
+    public Map<String, Object> publicJwks() {
+        List<Object> jwks = keys.stream()
+                .map(key -> (Object) Jwks.builder()
+                        .key(key.getPublicKey())
+                        .id(key.getKid())
+                        .algorithm(key.getAlgorithm())
+                        .publicKeyUse("sig")
+                        .build())
+                .toList();
+        return Map.of("keys", jwks);
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.key-refresh-interval:60000}")
+    public void refresh() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        try {
+            lastRefreshMillis = System.currentTimeMillis();
+            keys = keyRepository.findVerificationKeys(retainedSince()).stream()
+                    .map(this::load)
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Could not refresh JWT key ring: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.key-rotation-check-interval:3600000}")
+    public void rotate() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        // One node rotates; the others pick the new key up on their next refresh
+        jobCoordinationService.runExclusively("jwt-key-rotation",
+                () -> transactionTemplate.executeWithoutResult(status -> rotateKeys()));
+        refresh();
+    }
+    
+    private void rotateKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        boolean due = keys.stream()
+                .map(LoadedKey::getActivatesAt)
+                .max(Comparator.naturalOrder())
+                .map(newest -> newest.plusSeconds(rotationInterval / 1000).isBefore(now))
+                .orElse(true);
+        if (due) {
+            createKey(now.plusSeconds(publishAhead / 1000));
+        }
+        keyRepository.deleteRetiredBefore(retainedSince());
+    }
+    
+    private void createKey(LocalDateTime activatesAt) {
+        KeyPair keyPair = generateKeyPair();
+        String kid = TokenGenerator.generateSecureToken(12);
+        keyRepository.save(JwtSigningKey.builder()
+                .kid(kid)
+                .algorithm(signatureAlgorithm().getId())
+                .publicKey(keyPair.getPublic().getEncoded())
+                .privateKey(encrypt(keyPair.getPrivate().getEncoded()))
+                .activatesAt(activatesAt)
+                .build());
+        // Older keys stop signing once the new one activates but remain valid for verification
+        keyRepository.retireAllExcept(kid, activatesAt);
+        log.info("Created JWT signing key {} ({}), active from {}", kid, algorithm, activatesAt);
+    }
+    
+    private LocalDateTime retainedSince() {
+        return LocalDateTime.now().minusSeconds(Math.max(refreshExpiration, trustedDeviceExpiration) / 1000);
+    }
+    
+    public SignatureAlgorithm signatureAlgorithm() {
+        return switch (algorithm.toUpperCase()) {
+            case "RS256" -> Jwts.SIG.RS256;
+            case "ES256" -> Jwts.SIG.ES256;
+            case "EDDSA" -> Jwts.SIG.EdDSA;
+            default -> throw new IllegalStateException("Unsupported JWT algorithm: " + algorithm);
+        };
+    }
+    
+    private KeyPair generateKeyPair() {
+        if (signatureAlgorithm() == Jwts.SIG.EdDSA) {
+            return Jwks.CRV.Ed25519.keyPair().build();
+        }
+        return signatureAlgorithm().keyPair().build();
+    }
+    
+    private LoadedKey load(JwtSigningKey key) {
+        try {
+            PublicKey publicKey = keyFactory(key.getAlgorithm())
+                    .generatePublic(new X509EncodedKeySpec(key.getPublicKey()));
+            PrivateKey privateKey = keyFactory(key.getAlgorithm())
+                    .generatePrivate(new PKCS8EncodedKeySpec(decrypt(key.getPrivateKey())));
+            return new LoadedKey(key.getKid(), key.getAlgorithm(), publicKey, privateKey, key.getActivatesAt());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not load JWT signing key " + key.getKid(), e);
+        }
+    }
+    
+    private KeyFactory keyFactory(String jwsAlgorithm) throws GeneralSecurityException {
+        return switch (jwsAlgorithm) {
+            case "RS256" -> KeyFactory.getInstance("RSA");
+            case "ES256" -> KeyFactory.getInstance("EC");
+            default -> KeyFactory.getInstance("EdDSA");
+        };
+    }
+    
+    private byte[] encrypt(byte[] plaintext) {
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey(), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            return ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt JWT signing key", e);
+        }
+    }
+    
+    private byte[] decrypt(byte[] stored) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, encryptionKey(), new GCMParameterSpec(GCM_TAG_BITS, stored, 0, GCM_IV_LENGTH));
+        return cipher.doFinal(stored, GCM_IV_LENGTH, stored.length - GCM_IV_LENGTH);
+    }
+    
+    private SecretKeySpec encryptionKey() throws GeneralSecurityException {
+        byte[] keyBytes = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+    
+    @lombok.Value
+    public static class LoadedKey {
+        String kid;
+        String algorithm;
+        PublicKey publicKey;
+        PrivateKey privateKey;
+        LocalDateTime activatesAt;
+    }
+}
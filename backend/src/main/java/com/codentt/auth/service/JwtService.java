@@ -1,21 +1,38 @@
 package com.codentt.auth.service;
 
+import com.codentt.auth.security.VerifiedToken;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
+@RequiredArgsConstructor
 public class JwtService {
     
+    public static final String TRUSTED_DEVICE_TOKEN_TYPE = "trusted_device";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+    
+    private final JwtKeyRingService keyRing;
+    
     @Value("${jwt.secret}")
     private String secret;
     
@@ -25,8 +42,57 @@ public class JwtService {
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    @Value("${jwt.trusted-device-expiration}")
+    private Long trustedDeviceExpiration;
+    
+    @Value("${jwt.hmac-accepted-until:}")
+    private String hmacAcceptedUntil;
+    
+    // Both are immutable and thread-safe, so they are built once instead of per call
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        // In asymmetric mode the shared secret must not mint tokens forever: HMAC tokens issued before
+        // the switch are only honoured until the configured cutover, and not at all without one
+        Instant hmacCutover = !keyRing.isAsymmetric() ? Instant.MAX
+                : hmacAcceptedUntil.isBlank() ? Instant.MIN : Instant.parse(hmacAcceptedUntil);
+        parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        // Tokens without a kid are HMAC tokens, from HS256 mode or issued before a switch
+                        if (header.getKeyId() == null) {
+                            return Instant.now().isBefore(hmacCutover) ? signingKey : null;
+                        }
+                        return keyRing.verificationKey(header.getKeyId()).orElse(null);
+                    }
+                })
+                .build();
+    }
+    
+    public Map<String, Object> getPublicJwks() {
+        return keyRing.publicJwks();
+    }
+    
+    /**
+     * Parses and verifies the token exactly once.
+     *
+     * @throws JwtException if the signature is invalid or the token has expired
+     */
+    public VerifiedToken verifyToken(String token) {
+        Claims claims = extractAllClaims(token);
+        return VerifiedToken.builder()
+                .subject(claims.getSubject())
+                .userId(claims.get("userId", Long.class))
+                .generation(claims.get("gen", Integer.class))
+                .tokenType(claims.get("token_type", String.class))
+                .roles(extractRoles(claims))
+                .issuedAt(claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null)
+                .expiresAt(claims.getExpiration() != null ? claims.getExpiration().toInstant() : null)
+                .build();
     }
     
     public String extractUsername(String token) {
@@ -43,38 +109,68 @@ public class JwtService {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private List<String> extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        if (roles instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        return List.of();
     }
     
     public String generateToken(String username, Map<String, Object> extraClaims) {
         return createToken(username, extraClaims, expiration);
     }
     
-    public String generateRefreshToken(String username) {
-        return createToken(username, new HashMap<>(), refreshExpiration);
+    /**
+     * Typed, so it is never accepted as a bearer token, and carries the session generation so
+     * logout-all revokes it too.
+     */
+    public String generateRefreshToken(String username, Long userId, Integer generation) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("token_type", REFRESH_TOKEN_TYPE);
+        claims.put("userId", userId);
+        claims.put("gen", generation);
+        return createToken(username, claims, refreshExpiration);
+    }
+    
+    /**
+     * Long-lived proof that this device already passed human verification for the user.
+     * Carries the session generation, so logout-all and password resets revoke it along with every
+     * session; logging out the session it was issued with revokes it too (see {@link SessionService}).
+     */
+    public String generateTrustedDeviceToken(String username, Long userId, Integer generation) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("token_type", TRUSTED_DEVICE_TOKEN_TYPE);
+        claims.put("userId", userId);
+        claims.put("gen", generation);
+        return createToken(username, claims, trustedDeviceExpiration);
     }
     
     private String createToken(String subject, Map<String, Object> claims, Long expiration) {
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .claims(claims)
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
-                .compact();
+                .expiration(new Date(System.currentTimeMillis() + expiration));
+        if (keyRing.isAsymmetric()) {
+            JwtKeyRingService.LoadedKey key = keyRing.currentSigningKey();
+            builder.header().keyId(key.getKid()).and()
+                    .signWith(key.getPrivateKey(), keyRing.signatureAlgorithm());
+        } else {
+            builder.signWith(signingKey);
+        }
+        return builder.compact();
     }
     
     public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        // The parser rejects expired tokens, so a successful verification only needs the subject check
+        try {
+            return verifyToken(token).getSubject().equals(username);
+        } catch (JwtException e) {
+            return false;
+        }
     }
 }
-
@@ -0,0 +1,189 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Failed-login counting and lockout with write-behind persistence.
+ * <p>
+ * Counts live in a concurrent map and change through {@code compute()}, which only locks the
+ * entry's bin, so a burst of attempts on one account serialises in memory instead of on its
+ * {@code users} row. Lockout is decided here, immediately and consistently for this node.
+ * Every {@code app.login-attempts.flush-interval} the changes are written in two JDBC batches:
+ * resets first, then failures added to the stored count, so attempts seen by different nodes
+ * add up. Flushed entries are dropped and the next login reseeds from the row it loads anyway.
+ * A crash loses at most one interval of failure counts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LoginAttemptService {
+    
+    private static final String RESET_SQL = """
+            UPDATE users SET failed_login_attempts = 0, account_non_locked = TRUE, lockout_time = NULL
+            WHERE id = ? AND (failed_login_attempts <> 0 OR account_non_locked = FALSE)
+            """;
+    // Postgres evaluates every SET expression against the old row
+    private static final String FAILURES_SQL = """
+            UPDATE users SET
+                failed_login_attempts = failed_login_attempts + ?,
+                account_non_locked = CASE WHEN failed_login_attempts + ? >= ? THEN FALSE ELSE account_non_locked END,
+                lockout_time = CASE WHEN account_non_locked AND failed_login_attempts + ? >= ? THEN ? ELSE lockout_time END
+            WHERE id = ?
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.max-login-attempts}")
+    private int maxLoginAttempts;
+    
+    @Value("${app.login-lockout-duration}")
+    private Long lockoutDuration;
+    
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("auth.login-attempts.buffered", entries, Map::size)
+                .register(meterRegistry);
+    }
+    
+    public State state(User user) {
+        Entry entry = entries.get(user.getId());
+        return entry != null ? entry.state() : seed(user);
+    }
+    
+    /**
+     * @return the state after this failure; locked once it reaches {@code app.max-login-attempts}
+     */
+    public State recordFailure(User user) {
+        return entries.compute(user.getId(), (id, entry) -> {
+            Entry current = entry != null ? entry : new Entry(seed(user), 0, false, 0);
+            State state = current.state();
+            int failures = state.failures() + 1;
+            boolean lockNow = !state.locked() && failures >= maxLoginAttempts;
+            State next = state(failures, state.locked() || lockNow,
+                    lockNow ? LocalDateTime.now() : state.lockoutTime());
+            return new Entry(next, current.resetSeq(), current.resetPending(), current.unflushedFailures() + 1);
+        }).state();
+    }
+    
+    /**
+     * Clears failures and any lockout. Writes nothing when there is nothing to clear, which is the
+     * normal successful login.
+     */
+    public void reset(User user) {
+        State state = state(user);
+        if (state.failures() == 0 && !state.locked()) {
+            return;
+        }
+        entries.compute(user.getId(), (id, entry) ->
+                new Entry(State.CLEAR, entry != null ? entry.resetSeq() + 1 : 1, true, 0));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.login-attempts.flush-interval:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+        if (!entries.isEmpty()) {
+            log.error("{} failed-login counters could not be persisted before shutdown", entries.size());
+        }
+    }
+    
+    private void flushLocked() {
+        List<Map.Entry<Long, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+        List<Map.Entry<Long, Entry>> resets = snapshot.stream().filter(e -> e.getValue().resetPending()).toList();
+        List<Map.Entry<Long, Entry>> failures = snapshot.stream().filter(e -> e.getValue().unflushedFailures() > 0).toList();
+        
+        if (!resets.isEmpty() || !failures.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(RESET_SQL, resets, resets.size(),
+                            (ps, reset) -> ps.setLong(1, reset.getKey()));
+                    jdbcTemplate.batchUpdate(FAILURES_SQL, failures, failures.size(), (ps, failure) -> {
+                        Entry entry = failure.getValue();
+                        LocalDateTime lockoutTime = entry.state().lockoutTime() != null ? entry.state().lockoutTime() : now;
+                        ps.setInt(1, entry.unflushedFailures());
+                        ps.setInt(2, entry.unflushedFailures());
+                        ps.setInt(3, maxLoginAttempts);
+                        ps.setInt(4, entry.unflushedFailures());
+                        ps.setInt(5, maxLoginAttempts);
+                        ps.setTimestamp(6, Timestamp.valueOf(lockoutTime));
+                        ps.setLong(7, failure.getKey());
+                    });
+                });
+            } catch (Exception e) {
+                // Entries stay buffered and are retried on the next flush
+                log.error("Failed to flush {} login attempt resets and {} failure counts", resets.size(), failures.size(), e);
+                return;
+            }
+        }
+        
+        // Drop what was written, keeping anything recorded since the snapshot for the next flush
+        snapshot.forEach(flushed -> entries.computeIfPresent(flushed.getKey(), (id, current) -> {
+            Entry written = flushed.getValue();
+            if (current.resetSeq() != written.resetSeq()) {
+                // Reset again after the snapshot; the new reset and the failures after it are still pending
+                return current;
+            }
+            int unflushed = current.unflushedFailures() - written.unflushedFailures();
+            boolean resetPending = current.resetPending() && !written.resetPending();
+            return unflushed == 0 && !resetPending ? null : new Entry(current.state(), current.resetSeq(), resetPending, unflushed);
+        }));
+    }
+    
+    private State seed(User user) {
+        boolean locked = !user.getAccountNonLocked();
+        return state(user.getFailedLoginAttempts(), locked, locked ? user.getLockoutTime() : null);
+    }
+    
+    private State state(int failures, boolean locked, LocalDateTime lockoutTime) {
+        return new State(failures, locked, lockoutTime,
+                lockoutTime != null ? lockoutTime.plus(Duration.ofMillis(lockoutDuration)) : null);
+    }
+    
+    /**
+     * @param lockoutTime when the account was locked; null if unlocked or locked without a time
+     * @param lockedUntil when the lockout ends, {@code app.login-lockout-duration} after {@code lockoutTime}
+     */
+    public record State(int failures, boolean locked, LocalDateTime lockoutTime, LocalDateTime lockedUntil) {
+        static final State CLEAR = new State(0, false, null, null);
+    }
+    
+    // Immutable, replaced through compute(); unflushedFailures counts failures since the pending reset, if any
+    private record Entry(State state, long resetSeq, boolean resetPending, int unflushedFailures) {
+    }
+}
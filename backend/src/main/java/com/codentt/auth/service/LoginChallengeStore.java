@@ -0,0 +1,32 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.LoginChallenge;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Where issued login challenges live until they are answered. Selected with
+ * {@code app.login-challenge.mode}: {@code stateless} seals the challenge into its token,
+ * {@code database} keeps a {@code login_challenges} row per challenge, {@code memory} keeps it in
+ * the {@link EphemeralStore} of this node.
+ */
+public interface LoginChallengeStore {
+    
+    /**
+     * @param difficulty leading zero bits required for {@code PROOF_OF_WORK}, 0 for other types
+     * @return the token the client sends back with its answer; it doubles as the proof-of-work nonce
+     */
+    String issue(LoginChallenge.ChallengeType type, String question, List<String> options,
+                 List<String> correctAnswer, int difficulty, LocalDateTime expiresAt);
+    
+    /**
+     * Uses up an attempt on the challenge and checks the answer.
+     *
+     * @param answer the client's answer, or null if it could not be parsed
+     * @param minDifficulty when positive, only a {@code PROOF_OF_WORK} challenge of at least this difficulty passes
+     * @throws com.codentt.auth.exception.BadRequestException if the token is unknown or forged
+     * @throws com.codentt.auth.exception.UnauthorizedException if the challenge expired or has no attempts left
+     */
+    boolean verify(String challengeToken, List<String> answer, int minDifficulty);
+}
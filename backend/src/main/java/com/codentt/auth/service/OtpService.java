@@ -0,0 +1,65 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.OTP;
+import com.codentt.auth.entity.User;
+import com.codentt.auth.utils.TokenGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Issues OTPs with at most one active OTP per identifier and type, held by the {@link OtpStore}.
+ * <p>
+ * Sending is a single upsert on that OTP. While the current code is still valid it is sent
+ * again rather than replaced, and a send within {@code app.otp.resend-cooldown} of the last one
+ * sends nothing, since the earlier SMS is still on its way. Once the code has expired or used up
+ * its retries, the row is rotated to a fresh code in place.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OtpService {
+    
+    private final OtpStore otpStore;
+    private final OutboxService outboxService;
+    
+    @Value("${app.phone-otp-expiry}")
+    private Long phoneOtpExpiry;
+    
+    @Value("${app.otp-length}")
+    private int otpLength;
+    
+    @Value("${app.otp.resend-cooldown}")
+    private Long resendCooldown;
+    
+    /**
+     * @return false if the send was coalesced with a recent one and no SMS was queued
+     */
+    @Transactional
+    public boolean sendPhoneVerification(User user) {
+        Optional<String> code = otpStore.issue(user.getId(), user.getPhoneNumber(), OTP.OtpType.PHONE_VERIFICATION,
+                TokenGenerator.generateOTP(otpLength), phoneOtpExpiry, resendCooldown);
+        if (code.isEmpty()) {
+            log.debug("Coalesced OTP resend for user {}", user.getId());
+            return false;
+        }
+        outboxService.enqueue(OutboxService.MessageType.PHONE_OTP, user.getPhoneNumber(), code.get(),
+                LocalDateTime.now().plusSeconds(phoneOtpExpiry / 1000));
+        return true;
+    }
+    
+    /**
+     * Constant-time, so response timing doesn't reveal how much of a guess was right.
+     */
+    public static boolean codeMatches(String expected, String presented) {
+        return presented != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
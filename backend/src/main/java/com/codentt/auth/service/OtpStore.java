@@ -0,0 +1,40 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.OTP;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Where the active OTP of each identifier and type lives. Selected with {@code app.otp.store}:
+ * {@code database} keeps it in {@code otps}, {@code memory} in the {@link EphemeralStore} of this node.
+ */
+public interface OtpStore {
+    
+    /**
+     * Makes sure the identifier has an active OTP: a still valid one is kept, anything else is
+     * replaced by {@code freshCode}.
+     *
+     * @return the code to send, or empty if the last send was less than {@code cooldownMillis} ago
+     */
+    Optional<String> issue(Long userId, String identifier, OTP.OtpType type, String freshCode,
+                           long ttlMillis, long cooldownMillis);
+    
+    Optional<ActiveOtp> findActive(String identifier, OTP.OtpType type);
+    
+    void recordFailedAttempt(ActiveOtp otp);
+    
+    /**
+     * Uses up the OTP, if it is still valid and the user still has its phone number, and marks the phone verified.
+     *
+     * @return the user id, or empty if the OTP can't be consumed
+     */
+    Optional<Long> consumePhoneVerification(ActiveOtp otp, LocalDateTime now);
+    
+    /**
+     * @param id the row id, null for the memory store
+     * @param valid false once the OTP has expired or used up its retries
+     */
+    record ActiveOtp(Long id, Long userId, String identifier, OTP.OtpType type, String code, boolean valid) {
+    }
+}
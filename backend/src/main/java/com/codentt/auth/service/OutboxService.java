@@ -0,0 +1,175 @@
+package com.codentt.auth.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transactional outbox for verification emails, reset emails and OTP SMS.
+ * <p>
+ * Callers enqueue a row in {@code outbox_messages} inside the transaction that created the token or
+ * code, so a message exists exactly when its token does and no request ever waits on a mail or
+ * SMS provider. Every node polls the table every {@code app.outbox.poll-interval}, claiming due
+ * rows in batches with {@code FOR UPDATE SKIP LOCKED} and holding each claim for
+ * {@code app.outbox.claim-timeout}, so nodes never send the same row twice unless one dies mid-batch.
+ * Sending happens outside any transaction. Sent rows are deleted; a failed send is retried with
+ * exponential backoff and dead-lettered after {@code app.outbox.max-attempts}. Rows whose token
+ * has expired are no longer sent and are purged by the expiry reaper, dead letters included.
+ * Delivery is at least once: a node that dies between sending and deleting sends that batch again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    
+    private static final String INSERT_SQL = """
+            INSERT INTO outbox_messages (message_type, recipient, payload, status, attempts, next_attempt_at,
+                                         created_at, expires_at)
+            VALUES (?, ?, ?, 'PENDING', 0, ?, ?, ?)
+            """;
+    private static final String CLAIM_SQL = """
+            UPDATE outbox_messages SET attempts = attempts + 1, next_attempt_at = ?
+            WHERE id IN (
+                SELECT id FROM outbox_messages
+                WHERE status = 'PENDING' AND next_attempt_at <= ? AND expires_at > ?
+                ORDER BY next_attempt_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, message_type, recipient, payload, attempts
+            """;
+    private static final String DELETE_SQL = "DELETE FROM outbox_messages WHERE id = ?";
+    private static final String FAILED_SQL = """
+            UPDATE outbox_messages
+            SET status = CASE WHEN attempts >= ? THEN 'DEAD' ELSE 'PENDING' END, next_attempt_at = ?, last_error = ?
+            WHERE id = ?
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailService emailService;
+    private final SmsService smsService;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.outbox.batch-size}")
+    private int batchSize;
+    
+    @Value("${app.outbox.claim-timeout}")
+    private Long claimTimeout;
+    
+    @Value("${app.outbox.max-attempts}")
+    private int maxAttempts;
+    
+    @Value("${app.outbox.initial-backoff}")
+    private Long initialBackoff;
+    
+    @Value("${app.outbox.max-backoff}")
+    private Long maxBackoff;
+    
+    /**
+     * Queues a message; it is only sent if the caller's transaction commits.
+     *
+     * @param expiresAt when the token or code in {@code payload} stops working; the message is not sent after that
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(MessageType type, String recipient, String payload, LocalDateTime expiresAt) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(INSERT_SQL, type.name(), recipient, payload,
+                Timestamp.valueOf(now), Timestamp.valueOf(now), Timestamp.valueOf(expiresAt));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:1000}")
+    public void dispatch() {
+        try {
+            List<Message> batch;
+            do {
+                batch = claim();
+                send(batch);
+            } while (batch.size() == batchSize && !Thread.currentThread().isInterrupted());
+        } catch (DataAccessException e) {
+            // Claimed rows become due again once their claim times out
+            log.warn("Outbox dispatch failed: {}", e.getMessage());
+        }
+    }
+    
+    private List<Message> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> toMessage(rs),
+                Timestamp.valueOf(now.plusNanos(claimTimeout * 1_000_000)),
+                Timestamp.valueOf(now),
+                Timestamp.valueOf(now),
+                batchSize);
+    }
+    
+    private void send(List<Message> batch) {
+        List<Long> sent = new ArrayList<>(batch.size());
+        List<Object[]> failed = new ArrayList<>();
+        for (Message message : batch) {
+            try {
+                deliver(message);
+                sent.add(message.id());
+                meterRegistry.counter("auth.outbox.sent", "type", message.type().name()).increment();
+            } catch (RuntimeException e) {
+                boolean dead = message.attempts() >= maxAttempts;
+                meterRegistry.counter(dead ? "auth.outbox.dead" : "auth.outbox.failed", "type", message.type().name()).increment();
+                if (dead) {
+                    log.error("Dead-lettered {} message {} after {} attempts", message.type(), message.id(), message.attempts(), e);
+                } else {
+                    log.warn("Sending {} message {} failed (attempt {}): {}", message.type(), message.id(), message.attempts(), e.getMessage());
+                }
+                failed.add(new Object[] {
+                        maxAttempts,
+                        Timestamp.valueOf(LocalDateTime.now().plusNanos(backoff(message.attempts()) * 1_000_000)),
+                        String.valueOf(e.getMessage()),
+                        message.id()
+                });
+            }
+        }
+        
+        jdbcTemplate.batchUpdate(DELETE_SQL, sent, sent.size(), (ps, id) -> ps.setLong(1, id));
+        jdbcTemplate.batchUpdate(FAILED_SQL, failed);
+    }
+    
+    private void deliver(Message message) {
+        switch (message.type()) {
+            case VERIFICATION_EMAIL -> emailService.sendVerificationEmail(message.recipient(), message.payload());
+            case PASSWORD_RESET_EMAIL -> emailService.sendPasswordResetEmail(message.recipient(), message.payload());
+            case PHONE_OTP -> smsService.sendOTP(message.recipient(), message.payload());
+        }
+    }
+    
+    private long backoff(int attempts) {
+        return Math.min(maxBackoff, initialBackoff << Math.min(attempts - 1, 20));
+    }
+    
+    private static Message toMessage(ResultSet rs) throws SQLException {
+        return new Message(
+                rs.getLong("id"),
+                MessageType.valueOf(rs.getString("message_type")),
+                rs.getString("recipient"),
+                rs.getString("payload"),
+                rs.getInt("attempts"));
+    }
+    
+    public enum MessageType {
+        VERIFICATION_EMAIL,
+        PASSWORD_RESET_EMAIL,
+        PHONE_OTP
+    }
+    
+    private record Message(long id, MessageType type, String recipient, String payload, int attempts) {
+    }
+}
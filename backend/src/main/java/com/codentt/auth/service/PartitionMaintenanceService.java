@@ -0,0 +1,142 @@
+package com.codentt.auth.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the daily partitions of {@code user_sessions} and {@code login_challenges} (see V16) in shape.
+ * <p>
+ * Partitions are created {@code app.partitions.days-ahead} days in advance. Should maintenance fall
+ * further behind than that, inserts land in each table's DEFAULT partition (V23) instead of failing;
+ * that is logged and its current size exported as {@code auth.partitions.default-rows}, the rows are
+ * moved into their own partition once it is created, and expired ones are purged from it.
+ * <p>
+ * A partition is detached and dropped once every row in it expired more than
+ * {@code app.partitions.retention-days} days ago; that is a catalog operation, so no rows are
+ * deleted and nothing is left for vacuum.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionMaintenanceService {
+    
+    private static final List<PartitionedTable> PARTITIONED_TABLES = List.of(
+            new PartitionedTable("user_sessions", "expires_at"),
+            new PartitionedTable("login_challenges", "expiry_date"));
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT child.relname
+            FROM pg_inherits
+            JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE parent.relname = ?
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final JobCoordinationService jobCoordinationService;
+    
+    @Value("${app.partitions.days-ahead}")
+    private int daysAhead;
+    
+    @Value("${app.partitions.retention-days}")
+    private int retentionDays;
+    
+    private final Map<String, AtomicLong> defaultRows = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    void registerMetrics() {
+        for (PartitionedTable table : PARTITIONED_TABLES) {
+            AtomicLong rows = new AtomicLong();
+            defaultRows.put(table.name(), rows);
+            Gauge.builder("auth.partitions.default-rows", rows, AtomicLong::get)
+                    .tag("table", table.name())
+                    .register(meterRegistry);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.partitions.maintenance-interval:3600000}")
+    public void maintain() {
+        jobCoordinationService.runExclusively("partition-maintenance", this::maintainPartitions);
+    }
+    
+    private void maintainPartitions() {
+        LocalDate today = LocalDate.now();
+        for (PartitionedTable table : PARTITIONED_TABLES) {
+            try {
+                checkOverflow(table);
+                createPartitions(table.name(), today);
+                dropExpiredPartitions(table.name(), today);
+                purgeDefaultPartition(table, today);
+            } catch (DataAccessException e) {
+                log.error("Partition maintenance failed on {}", table.name(), e);
+            }
+        }
+    }
+    
+    private void checkOverflow(PartitionedTable table) {
+        Long overflow = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table.defaultPartition(), Long.class);
+        long rows = overflow != null ? overflow : 0;
+        defaultRows.get(table.name()).set(rows);
+        if (rows > 0) {
+            log.warn("{} rows of {} fell into its default partition; partitions were missing for their expiry",
+                    overflow, table.name());
+        }
+    }
+    
+    private void createPartitions(String table, LocalDate today) {
+        jdbcTemplate.queryForList("SELECT create_daily_partitions(?, ?, ?)",
+                table, Date.valueOf(today.minusDays(1)), Date.valueOf(today.plusDays(daysAhead)));
+    }
+    
+    private void dropExpiredPartitions(String table, LocalDate today) {
+        Pattern namePattern = Pattern.compile(Pattern.quote(table) + "_p(\\d{8})");
+        LocalDate cutoff = today.minusDays(retentionDays);
+        
+        for (String partition : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, table)) {
+            Matcher matcher = namePattern.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            // A partition holds one day of expiries: [day, day + 1)
+            LocalDate day = LocalDate.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (day.plusDays(1).isAfter(cutoff)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            meterRegistry.counter("auth.partitions.dropped", "table", table).increment();
+            log.info("Dropped expired partition {}", partition);
+        }
+    }
+    
+    private void purgeDefaultPartition(PartitionedTable table, LocalDate today) {
+        jdbcTemplate.update("DELETE FROM " + table.defaultPartition() + " WHERE " + table.keyColumn() + " < ?",
+                Date.valueOf(today.minusDays(retentionDays)));
+    }
+    
+    private record PartitionedTable(String name, String keyColumn) {
+        
+        String defaultPartition() {
+            return name + "_default";
+        }
+    }
+}
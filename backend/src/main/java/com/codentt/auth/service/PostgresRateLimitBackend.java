@@ -0,0 +1,132 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.config.RateLimitProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster-wide rate limits on the shared Postgres.
+ * <p>
+ * Counters are fixed windows in the UNLOGGED {@code rate_limit_counters} table. A node never
+ * asks the database for a single request: it claims a chunk of the window's capacity with one
+ * atomic upsert and hands it out locally until it runs dry, so a policy with capacity C costs
+ * about C / chunk writes per window instead of C. Once the database reports a window exhausted
+ * the node rejects locally until the window ends, so abusive traffic adds no writes at all.
+ * Unused leased quota is lost when the window ends, which only ever makes limits stricter.
+ * <p>
+ * If the database is unreachable the node falls back to its own in-memory buckets.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "postgres")
+public class PostgresRateLimitBackend implements RateLimitBackend {
+    
+    private static final String CLAIM_SQL = """
+            INSERT INTO rate_limit_counters (bucket_key, window_start, window_end, hits)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_key, window_start)
+            DO UPDATE SET hits = rate_limit_counters.hits + EXCLUDED.hits
+            RETURNING hits
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final RateLimitProperties properties;
+    private final JobCoordinationService jobCoordinationService;
+    
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final InMemoryRateLimitBackend fallback = new InMemoryRateLimitBackend();
+    
+    @Override
+    public long tryAcquire(RateLimitProperties.Policy policy, String key) {
+        long now = System.currentTimeMillis();
+        long windowStart = now - Math.floorMod(now, policy.getPeriod());
+        String bucketKey = policy.getName() + ':' + key;
+        Lease lease = leases.compute(bucketKey, (k, existing) ->
+                existing != null && existing.windowStart == windowStart
+                        ? existing
+                        : new Lease(windowStart, windowStart + policy.getPeriod()));
+        
+        while (true) {
+            if (lease.exhausted) {
+                return lease.windowEnd - now;
+            }
+            int left = lease.remaining.get();
+            if (left > 0) {
+                if (lease.remaining.compareAndSet(left, left - 1)) {
+                    return 0;
+                }
+                continue;
+            }
+            // One claim per key at a time on this node; concurrent callers reuse its result
+            synchronized (lease) {
+                if (lease.remaining.get() > 0 || lease.exhausted) {
+                    continue;
+                }
+                try {
+                    claim(policy, bucketKey, lease);
+                } catch (DataAccessException e) {
+                    log.warn("Rate limit store unavailable, using local limits: {}", e.getMessage());
+                    return fallback.tryAcquire(policy, key);
+                }
+            }
+        }
+    }
+    
+    private void claim(RateLimitProperties.Policy policy, String bucketKey, Lease lease) {
+        int chunk = chunkSize(policy);
+        Integer hits = jdbcTemplate.queryForObject(CLAIM_SQL, Integer.class,
+                bucketKey, lease.windowStart, lease.windowEnd, chunk);
+        int granted = Math.min(chunk, policy.getCapacity() - (hits - chunk));
+        if (granted > 0) {
+            lease.remaining.addAndGet(granted);
+        } else {
+            lease.exhausted = true;
+        }
+    }
+    
+    private int chunkSize(RateLimitProperties.Policy policy) {
+        int chunk = (int) Math.ceil(policy.getCapacity() * properties.getLeaseFraction());
+        return Math.max(1, Math.min(chunk, policy.getCapacity()));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval:60000}")
+    public void evictExpiredWindows() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.windowEnd <= now);
+        fallback.evictIdleBuckets();
+        // Leases are per node, but the shared table only needs one node cleaning it
+        jobCoordinationService.runExclusively("rate-limit-cleanup", () -> {
+            int deleted = jdbcTemplate.update("DELETE FROM rate_limit_counters WHERE window_end <= ?", now);
+            if (deleted > 0) {
+                log.debug("Removed {} expired rate limit counters", deleted);
+            }
+        });
+    }
+    
+    @Override
+    public int size() {
+        return leases.size() + fallback.size();
+    }
+    
+    private static final class Lease {
+        final long windowStart;
+        final long windowEnd;
+        final AtomicInteger remaining = new AtomicInteger();
+        volatile boolean exhausted;
+        
+        Lease(long windowStart, long windowEnd) {
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+        }
+    }
+}
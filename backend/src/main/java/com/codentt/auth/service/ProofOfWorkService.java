@@ -0,0 +1,132 @@
+package com.codentt.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides how much proof of work a login must carry, based on recent failures from the same
+ * IP and against the same account.
+ * <p>
+ * Below {@code failure-threshold} failures no proof of work is asked for, so ordinary users
+ * never see it. Past the threshold the difficulty starts at {@code base-difficulty} bits and
+ * grows by two bits (four times the work) each time the failure count doubles, up to
+ * {@code max-difficulty}. Failures against an account never raise it past {@code base-difficulty},
+ * so nobody can price a victim out of their own account by failing logins for it; only the IP
+ * counter escalates further. Counts are kept per node and expire {@code window} after the last failure.
+ */
+@Service
+public class ProofOfWorkService {
+    
+    @Value("${app.login-challenge.pow.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.login-challenge.pow.failure-threshold}")
+    private int failureThreshold;
+    
+    @Value("${app.login-challenge.pow.base-difficulty}")
+    private int baseDifficulty;
+    
+    @Value("${app.login-challenge.pow.max-difficulty}")
+    private int maxDifficulty;
+    
+    @Value("${app.login-challenge.pow.window}")
+    private Long window;
+    
+    @Value("${app.login-challenge.pow.min-hash-rate}")
+    private long minHashRate;
+    
+    @Value("${app.login-challenge.pow.max-tracked:100000}")
+    private long maxTracked;
+    
+    private Cache<String, AtomicInteger> failuresByIp;
+    private Cache<String, AtomicInteger> failuresByAccount;
+    
+    @PostConstruct
+    void init() {
+        failuresByIp = newCounterCache();
+        failuresByAccount = newCounterCache();
+    }
+    
+    /**
+     * @return the required difficulty in bits, or 0 when no proof of work is needed
+     */
+    public int requiredDifficulty(String ipAddress, String account) {
+        if (!enabled) {
+            return 0;
+        }
+        int byIp = difficultyFor(count(failuresByIp, ipAddress));
+        int byAccount = Math.min(baseDifficulty, difficultyFor(count(failuresByAccount, normalize(account))));
+        return Math.max(byIp, byAccount);
+    }
+    
+    /**
+     * Time a slow client needs to solve a challenge of this difficulty, to be added to its expiry.
+     * Allows three times the expected 2^difficulty hashes at {@code min-hash-rate}, which covers
+     * about 95% of attempts.
+     */
+    public long solveAllowanceMillis(int difficulty) {
+        return difficulty > 0 ? 3_000L * (1L << difficulty) / minHashRate : 0;
+    }
+    
+    /**
+     * Failures recorded for this IP within the window; also feeds the pre-auth source block.
+     */
+    public int failuresFromIp(String ipAddress) {
+        return count(failuresByIp, ipAddress);
+    }
+    
+    // Recorded even with proof of work disabled, since LoginPreAuthGuard reads the same counts
+    public void recordFailure(String ipAddress, String account) {
+        increment(failuresByIp, ipAddress);
+        increment(failuresByAccount, normalize(account));
+    }
+    
+    private int difficultyFor(int failures) {
+        if (failures < failureThreshold) {
+            return 0;
+        }
+        int doublings = 31 - Integer.numberOfLeadingZeros(failures / failureThreshold);
+        return Math.min(maxDifficulty, baseDifficulty + 2 * doublings);
+    }
+    
+    private Cache<String, AtomicInteger> newCounterCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterWrite(Duration.ofMillis(window))
+                .build();
+    }
+    
+    private static int count(Cache<String, AtomicInteger> counters, String key) {
+        if (key == null) {
+            return 0;
+        }
+        AtomicInteger counter = counters.getIfPresent(key);
+        return counter != null ? counter.get() : 0;
+    }
+    
+    private static void increment(Cache<String, AtomicInteger> counters, String key) {
+        if (key == null) {
+            return;
+        }
+        // compute() refreshes the write time, so the window restarts with every failure
+        counters.asMap().compute(key, (k, counter) -> {
+            AtomicInteger updated = counter != null ? counter : new AtomicInteger();
+            updated.incrementAndGet();
+            return updated;
+        });
+    }
+    
+    private static String normalize(String account) {
+        if (account == null || account.isBlank()) {
+            return null;
+        }
+        return account.trim().toLowerCase(Locale.ROOT);
+    }
+}
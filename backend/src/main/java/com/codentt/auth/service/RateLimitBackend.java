@@ -0,0 +1,20 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.config.RateLimitProperties;
+
+/**
+ * Storage for rate-limit state. Selected with {@code app.rate-limit.backend}: {@code memory}
+ * keeps buckets on this node only, {@code postgres} shares counters across every node.
+ */
+public interface RateLimitBackend {
+    
+    /**
+     * @return 0 if the request is allowed, otherwise the milliseconds until it would be
+     */
+    long tryAcquire(RateLimitProperties.Policy policy, String key);
+    
+    /**
+     * Number of keys currently tracked on this node.
+     */
+    int size();
+}
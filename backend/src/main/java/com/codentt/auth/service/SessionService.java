@@ -2,61 +2,170 @@ package com.codentt.auth.service;
 
 import com.codentt.auth.entity.User;
 import com.codentt.auth.entity.UserSession;
-import com.codentt.auth.repository.UserRepository;
+import com.codentt.auth.exception.ServiceUnavailableException;
 import com.codentt.auth.repository.UserSessionRepository;
+import com.codentt.auth.utils.TokenHash;
+import com.codentt.auth.utils.TokenHasher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Session registry with write-behind persistence.
+ * <p>
+ * New sessions and last-seen touches are buffered in memory and written in JDBC batches every
+ * {@code app.session.flush-interval}, or as soon as {@code app.session.max-buffered} sessions are
+ * waiting, so login never waits on an INSERT. At most one flush interval of sessions is lost on a
+ * crash; a clean shutdown flushes everything. Reads consult the buffer before the table, and
+ * invalidation takes the flush lock, so a logout straight after login is never lost. A trusted-device
+ * token issued at login is written with its session and revoked when that session logs out. A batch that
+ * fails is retried row by row, and rows the database rejects outright are dropped rather than
+ * blocking every later flush.
+ * <p>
+ * The buffers are bounded for when the database stops keeping up: past {@code app.session.max-pending}
+ * sessions a login fails with 503 instead of being buffered, and past
+ * {@code app.session.max-pending-touches} the oldest touches are dropped first.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SessionService {
     
+    private static final String INSERT_SQL = """
+            INSERT INTO user_sessions (user_id, access_token_hash, refresh_token_hash, device_info,
+                                       ip_address, created_at, expires_at, last_seen_at, is_active)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String TOUCH_SQL =
+            "UPDATE user_sessions SET last_seen_at = ? WHERE access_token_hash = ? AND expires_at > ?";
+    private static final String INSERT_DEVICE_SQL = """
+            INSERT INTO trusted_devices (token_hash, session_token_hash, user_id, expires_at, revoked)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+    private static final String REVOKE_DEVICES_SQL =
+            "UPDATE trusted_devices SET revoked = TRUE WHERE session_token_hash = ? AND revoked = FALSE";
+    private static final String DEVICE_TRUSTED_SQL =
+            "SELECT COUNT(*) FROM trusted_devices WHERE token_hash = ? AND revoked = FALSE AND expires_at > ?";
+    
     private final UserSessionRepository sessionRepository;
-    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
     
     @Value("${jwt.expiration}")
     private Long tokenExpiration;
     
-    @Transactional
-    public void createSession(User user, String accessToken, String refreshToken, String deviceInfo, String ipAddress) {
-        try {
-            String accessTokenHash = hashToken(accessToken);
-            String refreshTokenHash = refreshToken != null ? hashToken(refreshToken) : null;
-            
-            LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(tokenExpiration / 1000);
-            
-            UserSession session = UserSession.builder()
-                    .user(user)
-                    .accessTokenHash(accessTokenHash)
-                    .refreshTokenHash(refreshTokenHash)
-                    .deviceInfo(deviceInfo)
-                    .ipAddress(ipAddress)
-                    .expiresAt(expiresAt)
-                    .isActive(true)
-                    .build();
-            
-            sessionRepository.save(session);
-        } catch (Exception e) {
-            log.error("Error creating session for user: {}", user.getUsername(), e);
+    @Value("${jwt.trusted-device-expiration}")
+    private Long trustedDeviceExpiration;
+    
+    @Value("${app.session.max-buffered}")
+    private int maxBuffered;
+    
+    @Value("${app.session.max-pending}")
+    private int maxPending;
+    
+    @Value("${app.session.max-pending-touches}")
+    private int maxPendingTouches;
+    
+    @Value("${app.session.flush-interval:1000}")
+    private long flushInterval;
+    
+    // Keyed by access token hash; entries stay here until their INSERT has committed
+    private final ConcurrentMap<TokenHash, PendingSession> pendingSessions = new ConcurrentHashMap<>();
+    // The same sessions, keyed by the hash of the trusted-device token issued with them
+    private final ConcurrentMap<TokenHash, PendingSession> pendingDevices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TokenHash, LocalDateTime> pendingTouches = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock touchEvictionLock = new ReentrantLock();
+    
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("auth.sessions.buffered", pendingSessions, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("auth.sessions.touches-buffered", pendingTouches, Map::size)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * @param trustedDeviceToken trusted-device token issued with this login, or null; it stays
+     *                           trusted only while this session has not been logged out
+     * @throws ServiceUnavailableException if {@code app.session.max-pending} sessions are still
+     *                                     waiting to be persisted
+     */
+    public void createSession(User user, String accessToken, String refreshToken, String trustedDeviceToken,
+                              String deviceInfo, String ipAddress) {
+        if (pendingSessions.size() >= maxPending) {
+            flushIfIdle();
+            if (pendingSessions.size() >= maxPending) {
+                // The database is not keeping up; turn the login away rather than hold it in memory
+                meterRegistry.counter("auth.sessions.rejected").increment();
+                throw new ServiceUnavailableException("Server is busy. Please try again shortly.",
+                        Math.max(1, TimeUnit.MILLISECONDS.toSeconds(flushInterval)));
+            }
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        PendingSession session = new PendingSession(
+                user.getId(),
+                TokenHasher.hash(accessToken),
+                refreshToken != null ? TokenHasher.sha256(refreshToken) : null,
+                trustedDeviceToken != null ? TokenHasher.hash(trustedDeviceToken) : null,
+                truncate(deviceInfo, 255),
+                truncate(ipAddress, 45),
+                now,
+                now.plusSeconds(tokenExpiration / 1000),
+                now.plusSeconds(trustedDeviceExpiration / 1000)
+        );
+        if (session.trustedDeviceHash != null) {
+            pendingDevices.put(session.trustedDeviceHash, session);
+        }
+        pendingSessions.put(session.accessTokenHash, session);
+        
+        if (pendingSessions.size() >= maxBuffered) {
+            // Backpressure: the request that fills the buffer pays for one batch
+            flushIfIdle();
+        }
+    }
+    
+    /**
+     * Records activity on a session. Only the latest touch per token is kept until the next flush.
+     */
+    public void touch(String token) {
+        pendingTouches.put(TokenHasher.hash(token), LocalDateTime.now());
+        if (pendingTouches.size() > maxPendingTouches) {
+            evictOldestTouches();
         }
     }
     
     public boolean isTokenValid(String token) {
         try {
-            String tokenHash = hashToken(token);
-            Optional<UserSession> session = sessionRepository.findByAccessTokenHash(tokenHash);
+            TokenHash tokenHash = TokenHasher.hash(token);
+            PendingSession pending = pendingSessions.get(tokenHash);
+            if (pending != null) {
+                return pending.active && LocalDateTime.now().isBefore(pending.expiresAt);
+            }
+            
+            Optional<UserSession> session = sessionRepository.findByAccessTokenHashAndExpiresAtAfter(tokenHash.bytes(), LocalDateTime.now());
             
             if (session.isEmpty()) {
                 return false;
@@ -70,36 +179,227 @@ public class SessionService {
         }
     }
     
-    @Transactional
+    /**
+     * Whether the session for {@code tokenHash} was logged out while it is still waiting to be flushed,
+     * which the table can't know yet. Callers check this before querying the table: a session
+     * leaves the buffer only once its row has committed.
+     */
+    public boolean isRevokedBeforeFlush(TokenHash tokenHash) {
+        PendingSession pending = pendingSessions.get(tokenHash);
+        return pending != null && !pending.active;
+    }
+    
+    /**
+     * Whether a trusted-device token was issued by this service and the session it came with is
+     * still logged in. Expiry and session generation are the caller's to check on the token itself.
+     */
+    public boolean isDeviceTrusted(String trustedDeviceToken) {
+        TokenHash tokenHash = TokenHasher.hash(trustedDeviceToken);
+        PendingSession pending = pendingDevices.get(tokenHash);
+        if (pending != null) {
+            return pending.active;
+        }
+        Long count = jdbcTemplate.queryForObject(DEVICE_TRUSTED_SQL, Long.class,
+                tokenHash.bytes(), Timestamp.valueOf(LocalDateTime.now()));
+        return count != null && count > 0;
+    }
+    
     public void invalidateToken(String token) {
+        TokenHash tokenHash = TokenHasher.hash(token);
+        // Under the flush lock a session is either still buffered or already committed.
+        // The lock is always taken before a connection, so flushes and logouts can't deadlock on the pool.
+        flushLock.lock();
         try {
-            String tokenHash = hashToken(token);
-            sessionRepository.deactivateSessionByToken(tokenHash);
+            PendingSession pending = pendingSessions.get(tokenHash);
+            if (pending != null) {
+                pending.active = false;
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                sessionRepository.deactivateSessionByToken(tokenHash.bytes(), LocalDateTime.now());
+                jdbcTemplate.update(REVOKE_DEVICES_SQL, (Object) tokenHash.bytes());
+            });
         } catch (Exception e) {
             log.error("Error invalidating token", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.session.flush-interval:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
         }
     }
     
-    @Transactional
-    public void invalidateAllUserSessions(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElse(null);
+    private void flushIfIdle() {
+        if (flushLock.tryLock()) {
+            try {
+                flushLocked();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Drops the oldest tenth of the buffered touches in one pass, so the sort is paid once per
+     * {@code max-pending-touches / 10} touches rather than on every one. Touches are only last-seen
+     * hints, and a newer touch of the same session supersedes an older one anyway.
+     */
+    private void evictOldestTouches() {
+        if (!touchEvictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = pendingTouches.size() - maxPendingTouches + maxPendingTouches / 10;
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<TokenHash, LocalDateTime>> oldest = pendingTouches.entrySet().stream()
+                    .map(touch -> Map.entry(touch.getKey(), touch.getValue()))
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(excess)
+                    .toList();
+            oldest.forEach(touch -> pendingTouches.remove(touch.getKey(), touch.getValue()));
+            meterRegistry.counter("auth.sessions.touches-dropped").increment(oldest.size());
+            log.warn("Dropped {} buffered session touches; the database is not keeping up", oldest.size());
+        } finally {
+            touchEvictionLock.unlock();
+        }
+    }
+    
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+        if (!pendingSessions.isEmpty()) {
+            log.error("{} sessions could not be persisted before shutdown", pendingSessions.size());
+        }
+    }
+    
+    private void flushLocked() {
+        List<PendingSession> sessions = new ArrayList<>(pendingSessions.values());
+        List<Map.Entry<TokenHash, LocalDateTime>> touches = new ArrayList<>(pendingTouches.entrySet());
+        if (sessions.isEmpty() && touches.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertSessions(sessions);
+                updateTouches(touches);
+            });
+        } catch (Exception e) {
+            log.warn("Batch flush of {} sessions and {} touches failed, retrying row by row: {}",
+                    sessions.size(), touches.size(), e.getMessage());
+            flushRowByRow(sessions, touches);
+            return;
+        }
         
-        if (user != null) {
-            sessionRepository.deactivateAllUserSessions(user);
+        sessions.forEach(this::removePending);
+        touches.forEach(touch -> pendingTouches.remove(touch.getKey(), touch.getValue()));
+    }
+    
+    /**
+     * Isolates the rows that broke a batch. A row the database rejects outright (its user is gone, no
+     * partition takes its expiry) would fail every later flush too, so it is dropped; any other
+     * failure leaves the rest buffered for the next flush.
+     */
+    private void flushRowByRow(List<PendingSession> sessions, List<Map.Entry<TokenHash, LocalDateTime>> touches) {
+        for (PendingSession session : sessions) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertSessions(List.of(session)));
+            } catch (DataIntegrityViolationException e) {
+                meterRegistry.counter("auth.sessions.dropped").increment();
+                log.error("Dropping session of user {} that cannot be persisted", session.userId, e);
+            } catch (Exception e) {
+                log.error("Failed to flush {} sessions and {} touches", sessions.size(), touches.size(), e);
+                return;
+            }
+            removePending(session);
         }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> updateTouches(touches));
+        } catch (DataIntegrityViolationException e) {
+            // Touches are only last-seen hints; losing a batch of them is harmless
+            log.error("Dropping {} session touches that cannot be persisted", touches.size(), e);
+        } catch (Exception e) {
+            log.error("Failed to flush {} touches", touches.size(), e);
+            return;
+        }
+        touches.forEach(touch -> pendingTouches.remove(touch.getKey(), touch.getValue()));
     }
     
-    @Transactional
-    @Scheduled(fixedRate = 3600000) // Run every hour
-    public void cleanupExpiredSessions() {
-        sessionRepository.deleteExpiredSessions(LocalDateTime.now());
+    private void insertSessions(List<PendingSession> sessions) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, sessions, sessions.size(), (ps, session) -> {
+            ps.setLong(1, session.userId);
+            ps.setBytes(2, session.accessTokenHash.bytes());
+            ps.setBytes(3, session.refreshTokenHash);
+            ps.setString(4, session.deviceInfo);
+            ps.setString(5, session.ipAddress);
+            ps.setTimestamp(6, Timestamp.valueOf(session.createdAt));
+            ps.setTimestamp(7, Timestamp.valueOf(session.expiresAt));
+            ps.setTimestamp(8, Timestamp.valueOf(session.createdAt));
+            ps.setBoolean(9, session.active);
+        });
+        List<PendingSession> devices = sessions.stream().filter(session -> session.trustedDeviceHash != null).toList();
+        jdbcTemplate.batchUpdate(INSERT_DEVICE_SQL, devices, devices.size(), (ps, session) -> {
+            ps.setBytes(1, session.trustedDeviceHash.bytes());
+            ps.setBytes(2, session.accessTokenHash.bytes());
+            ps.setLong(3, session.userId);
+            ps.setTimestamp(4, Timestamp.valueOf(session.trustedDeviceExpiresAt));
+            ps.setBoolean(5, !session.active);
+        });
     }
     
-    private String hashToken(String token) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(hash);
+    private void removePending(PendingSession session) {
+        pendingSessions.remove(session.accessTokenHash, session);
+        if (session.trustedDeviceHash != null) {
+            pendingDevices.remove(session.trustedDeviceHash, session);
+        }
+    }
+    
+    private void updateTouches(List<Map.Entry<TokenHash, LocalDateTime>> touches) {
+        jdbcTemplate.batchUpdate(TOUCH_SQL, touches, touches.size(), (ps, touch) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(touch.getValue()));
+            ps.setBytes(2, touch.getKey().bytes());
+            ps.setTimestamp(3, Timestamp.valueOf(touch.getValue()));
+        });
+    }
+    
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+    
+    private static final class PendingSession {
+        final Long userId;
+        final TokenHash accessTokenHash;
+        final byte[] refreshTokenHash;
+        final TokenHash trustedDeviceHash;
+        final String deviceInfo;
+        final String ipAddress;
+        final LocalDateTime createdAt;
+        final LocalDateTime expiresAt;
+        final LocalDateTime trustedDeviceExpiresAt;
+        volatile boolean active = true;
+        
+        PendingSession(Long userId, TokenHash accessTokenHash, byte[] refreshTokenHash, TokenHash trustedDeviceHash,
+                       String deviceInfo, String ipAddress, LocalDateTime createdAt, LocalDateTime expiresAt,
+                       LocalDateTime trustedDeviceExpiresAt) {
+            this.userId = userId;
+            this.accessTokenHash = accessTokenHash;
+            this.refreshTokenHash = refreshTokenHash;
+            this.trustedDeviceHash = trustedDeviceHash;
+            this.deviceInfo = deviceInfo;
+            this.ipAddress = ipAddress;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.trustedDeviceExpiresAt = trustedDeviceExpiresAt;
+        }
     }
 }
-
@@ -0,0 +1,176 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.LoginChallenge;
+import com.codentt.auth.exception.BadRequestException;
+import com.codentt.auth.exception.UnauthorizedException;
+import com.codentt.auth.utils.ProofOfWork;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Challenges sealed into their own token, so issuing one touches no storage at all.
+ * <p>
+ * The token is {@code payload.mac}: the payload carries a random id, the challenge type and
+ * proof-of-work difficulty, the expiry and a keyed digest of the correct answer, and the whole
+ * thing is HMAC-SHA256 signed with a key derived from {@code jwt.secret}. The answer digest is keyed so the tiny answer
+ * space can't be brute-forced from the token. Each challenge allows a single attempt; replays are
+ * caught by an in-memory set of ids that only holds challenges that have not yet expired. The set
+ * is per node, so behind a load balancer a challenge could be answered once per node within its
+ * short lifetime.
+ */
+@Service
+@ConditionalOnProperty(name = "app.login-challenge.mode", havingValue = "stateless", matchIfMissing = true)
+public class StatelessLoginChallengeStore implements LoginChallengeStore {
+    
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 2;
+    private static final int ID_LENGTH = 16;
+    private static final int DIGEST_LENGTH = 32;
+    // version, type, difficulty, expiry, id, answer digest
+    private static final int PAYLOAD_LENGTH = 1 + 1 + 1 + Long.BYTES + ID_LENGTH + DIGEST_LENGTH;
+    private static final LoginChallenge.ChallengeType[] TYPES = LoginChallenge.ChallengeType.values();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    @Value("${jwt.secret}")
+    private String secret;
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    // Challenge id -> expiry (epoch ms) for every challenge that has been answered
+    private final ConcurrentMap<String, Long> usedChallenges = new ConcurrentHashMap<>();
+    private ThreadLocal<Mac> macs;
+    
+    @PostConstruct
+    void init() {
+        // A dedicated key, so a challenge MAC can never double as a JWT signature
+        Mac master = newMac(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+        SecretKeySpec challengeKey = new SecretKeySpec(
+                master.doFinal("login-challenge".getBytes(StandardCharsets.UTF_8)), HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> newMac(challengeKey));
+    }
+    
+    @Override
+    public String issue(LoginChallenge.ChallengeType type, String question, List<String> options,
+                        List<String> correctAnswer, int difficulty, LocalDateTime expiresAt) {
+        byte[] id = new byte[ID_LENGTH];
+        secureRandom.nextBytes(id);
+        long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .put(VERSION)
+                .put((byte) type.ordinal())
+                .put((byte) difficulty)
+                .putLong(expiresAtMillis)
+                .put(id)
+                .put(answerDigest(id, type, correctAnswer))
+                .array();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+    
+    @Override
+    public boolean verify(String challengeToken, List<String> answer, int minDifficulty) {
+        ByteBuffer payload = ByteBuffer.wrap(openSealed(challengeToken));
+        byte version = payload.get();
+        int typeOrdinal = payload.get();
+        if (version != VERSION || typeOrdinal < 0 || typeOrdinal >= TYPES.length) {
+            throw new BadRequestException("Invalid challenge token");
+        }
+        LoginChallenge.ChallengeType type = TYPES[typeOrdinal];
+        int difficulty = payload.get();
+        long expiresAtMillis = payload.getLong();
+        byte[] id = new byte[ID_LENGTH];
+        payload.get(id);
+        byte[] expectedDigest = new byte[DIGEST_LENGTH];
+        payload.get(expectedDigest);
+        
+        if (System.currentTimeMillis() > expiresAtMillis
+                || usedChallenges.putIfAbsent(ENCODER.encodeToString(id), expiresAtMillis) != null) {
+            throw new UnauthorizedException("Challenge expired or exceeded attempts");
+        }
+        
+        if (answer == null) {
+            return false;
+        }
+        if (type == LoginChallenge.ChallengeType.PROOF_OF_WORK) {
+            return difficulty >= minDifficulty && answer.size() == 1
+                    && ProofOfWork.isSolved(challengeToken, answer.get(0), difficulty);
+        }
+        if (minDifficulty > 0) {
+            return false;
+        }
+        // Selection types have exactly one correct option
+        if (type != LoginChallenge.ChallengeType.SENTENCE_ARRANGEMENT && answer.size() != 1) {
+            return false;
+        }
+        return MessageDigest.isEqual(expectedDigest, answerDigest(id, type, answer));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.login-challenge-expiry:30000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        usedChallenges.values().removeIf(expiresAt -> expiresAt < now);
+    }
+    
+    private byte[] openSealed(String challengeToken) {
+        int dot = challengeToken.indexOf('.');
+        if (dot < 0) {
+            throw new BadRequestException("Invalid challenge token");
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(challengeToken.substring(0, dot));
+            signature = DECODER.decode(challengeToken.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid challenge token");
+        }
+        if (payload.length != PAYLOAD_LENGTH || !MessageDigest.isEqual(sign(payload), signature)) {
+            throw new BadRequestException("Invalid challenge token");
+        }
+        return payload;
+    }
+    
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+    
+    private byte[] answerDigest(byte[] id, LoginChallenge.ChallengeType type, List<String> answer) {
+        Mac mac = macs.get();
+        mac.update((byte) 0); // domain separation from token signatures, whose input starts with VERSION
+        mac.update(id);
+        mac.update((byte) type.ordinal());
+        for (String part : answer) {
+            byte[] bytes = part != null ? part.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            mac.update(bytes);
+        }
+        return mac.doFinal();
+    }
+    
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.dto.IntrospectResponse;
+import com.codentt.auth.exception.BadRequestException;
+import com.codentt.auth.exception.ForbiddenException;
+import com.codentt.auth.exception.UnauthorizedException;
+import com.codentt.auth.repository.UserSessionRepository;
+import com.codentt.auth.security.SessionGenerationRegistry;
+import com.codentt.auth.security.VerifiedToken;
+import com.codentt.auth.security.VerifiedTokenCache;
+import com.codentt.auth.utils.TokenHash;
+import com.codentt.auth.utils.TokenHasher;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Answers "is this token still active" for other services in batches.
+ * Signature and expiry are checked in memory; logout state is resolved for the whole batch
+ * with one IN query on access_token_hash (plus the unflushed session buffer), and session generations with one IN query on users. Answers are cached for a short, expiry-bounded time.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenIntrospectionService {
+    
+    private final JwtService jwtService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserSessionRepository sessionRepository;
+    private final SessionService sessionService;
+    private final SessionGenerationRegistry sessionGenerationRegistry;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${app.introspection.max-batch-size}")
+    private int maxBatchSize;
+    
+    @Value("${app.introspection.cache-ttl}")
+    private Long cacheTtl;
+    
+    @Value("${app.introspection.cache-max-size}")
+    private long cacheMaxSize;
+    
+    @Value("${app.introspection.api-key:}")
+    private String apiKey;
+    
+    private Cache<TokenHash, IntrospectResponse.TokenStatus> cache;
+    
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new StatusExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.introspection");
+    }
+    
+    public void checkApiKey(String presentedKey) {
+        // Fails closed: /auth/** is public, so without a key anyone could probe tokens
+        if (apiKey == null || apiKey.isEmpty()) {
+            throw new ForbiddenException("Introspection is disabled: no introspection key is configured");
+        }
+        if (presentedKey == null || !MessageDigest.isEqual(
+                apiKey.getBytes(StandardCharsets.UTF_8), presentedKey.getBytes(StandardCharsets.UTF_8))) {
+            throw new UnauthorizedException("Invalid introspection key");
+        }
+    }
+    
+    public IntrospectResponse introspect(List<String> tokens) {
+        if (tokens.size() > maxBatchSize) {
+            throw new BadRequestException("At most " + maxBatchSize + " tokens can be introspected per call");
+        }
+        if (tokens.stream().anyMatch(token -> token == null || token.isBlank())) {
+            throw new BadRequestException("Tokens must not be null or blank");
+        }
+        
+        List<TokenHash> hashes = new ArrayList<>(tokens.size());
+        Map<TokenHash, IntrospectResponse.TokenStatus> resolved = new HashMap<>();
+        Map<TokenHash, VerifiedToken> pending = new HashMap<>();
+        
+        for (String token : tokens) {
+            TokenHash tokenHash = TokenHasher.hash(token);
+            hashes.add(tokenHash);
+            if (resolved.containsKey(tokenHash) || pending.containsKey(tokenHash)) {
+                continue;
+            }
+            IntrospectResponse.TokenStatus cached = cache.getIfPresent(tokenHash);
+            if (cached != null) {
+                resolved.put(tokenHash, cached);
+                continue;
+            }
+            try {
+                pending.put(tokenHash, verifiedTokenCache.get(token, jwtService::verifyToken));
+            } catch (JwtException | IllegalArgumentException e) {
+                IntrospectResponse.TokenStatus status = inactive();
+                cache.put(tokenHash, status);
+                resolved.put(tokenHash, status);
+            }
+        }
+        
+        if (!pending.isEmpty()) {
+            // The buffer first: a session only leaves it once its row, logout included, has committed
+            Set<TokenHash> revoked = pending.keySet().stream()
+                    .filter(sessionService::isRevokedBeforeFlush)
+                    .collect(Collectors.toCollection(HashSet::new));
+            List<byte[]> pendingHashes = pending.keySet().stream().map(TokenHash::bytes).toList();
+            sessionRepository.findRevokedTokenHashes(pendingHashes, LocalDateTime.now()).stream()
+                    .map(TokenHash::wrap)
+                    .forEach(revoked::add);
+            sessionGenerationRegistry.prefetch(pending.values().stream()
+                    .map(VerifiedToken::getUserId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet()));
+            pending.forEach((tokenHash, verified) -> {
+                boolean active = verified.getTokenType() == null
+                        && !revoked.contains(tokenHash) && sessionGenerationRegistry.isCurrent(verified);
+                IntrospectResponse.TokenStatus status = active ? active(verified) : inactive();
+                cache.put(tokenHash, status);
+                resolved.put(tokenHash, status);
+            });
+        }
+        
+        return IntrospectResponse.builder()
+                .results(hashes.stream().map(resolved::get).toList())
+                .build();
+    }
+    
+    public void evict(String token) {
+        cache.invalidate(TokenHasher.hash(token));
+    }
+    
+    public void evictSubject(String subject) {
+        cache.asMap().values().removeIf(status -> subject.equals(status.getSub()));
+    }
+    
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+    
+    private IntrospectResponse.TokenStatus active(VerifiedToken token) {
+        long secondsLeft = Math.max(0, Duration.between(Instant.now(), token.getExpiresAt()).getSeconds());
+        return IntrospectResponse.TokenStatus.builder()
+                .active(true)
+                .sub(token.getSubject())
+                .userId(token.getUserId())
+                .roles(token.getRoles())
+                .exp(token.getExpiresAt().getEpochSecond())
+                .maxAge(Math.min(cacheTtl / 1000, secondsLeft))
+                .build();
+    }
+    
+    private IntrospectResponse.TokenStatus inactive() {
+        // Inactive is final: an expired, forged or logged-out token never becomes active again
+        return IntrospectResponse.TokenStatus.builder()
+                .active(false)
+                .maxAge(cacheTtl / 1000)
+                .build();
+    }
+    
+    private static class StatusExpiry implements Expiry<TokenHash, IntrospectResponse.TokenStatus> {
+        
+        @Override
+        public long expireAfterCreate(TokenHash key, IntrospectResponse.TokenStatus status, long currentTime) {
+            return TimeUnit.SECONDS.toNanos(status.getMaxAge());
+        }
+        
+        @Override
+        public long expireAfterUpdate(TokenHash key, IntrospectResponse.TokenStatus status, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, status, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(TokenHash key, IntrospectResponse.TokenStatus status, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.codentt.auth.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent map whose values carry their own expiry.
+ * <p>
+ * Every new deadline is put on a {@link TimingWheel}, so {@link #expire} only visits keys that are
+ * actually due. The wheel holds keys, not values: a key whose value was replaced or removed in
+ * the meantime is simply checked again and left alone. Reads treat a value past its expiry as
+ * absent even before the wheel has removed it.
+ */
+public final class ExpiringMap<K, V extends ExpiringMap.Expiring> {
+    
+    // 64^3 ticks, about three days at one-second ticks; longer deadlines are re-placed as they come round
+    private static final int WHEEL_LEVELS = 3;
+    
+    private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<>();
+    private final TimingWheel<K> wheel;
+    
+    public ExpiringMap(long tickMillis) {
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+    }
+    
+    public V get(K key) {
+        V value = entries.get(key);
+        return value != null && isLive(value, System.currentTimeMillis()) ? value : null;
+    }
+    
+    public void put(K key, V value) {
+        schedule(key, entries.put(key, value), value);
+    }
+    
+    /**
+     * Atomically replaces the value for {@code key}; the function sees an expired value as null.
+     *
+     * @return the new value, or null if the function returned null and the key was removed
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        long now = System.currentTimeMillis();
+        List<V> previous = new ArrayList<>(1);
+        V value = entries.compute(key, (k, current) -> {
+            V live = current != null && isLive(current, now) ? current : null;
+            previous.add(live);
+            return remapping.apply(k, live);
+        });
+        schedule(key, previous.get(0), value);
+        return value;
+    }
+    
+    /**
+     * Removes the value for {@code key} and returns it, or null if there was no live value.
+     */
+    public V remove(K key) {
+        V value = entries.remove(key);
+        return value != null && isLive(value, System.currentTimeMillis()) ? value : null;
+    }
+    
+    /**
+     * Atomically removes the value for {@code key} if it is live and matches {@code condition}.
+     */
+    public boolean removeIf(K key, Predicate<? super V> condition) {
+        long now = System.currentTimeMillis();
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(key, (k, current) -> {
+            if (!isLive(current, now)) {
+                return null;
+            }
+            removed[0] = condition.test(current);
+            return removed[0] ? null : current;
+        });
+        return removed[0];
+    }
+    
+    /**
+     * Drops every value whose expiry has passed by {@code nowMillis}.
+     */
+    public void expire(long nowMillis) {
+        List<K> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(nowMillis, due::add);
+        }
+        for (K key : due) {
+            entries.computeIfPresent(key, (k, value) -> isLive(value, nowMillis) ? value : null);
+        }
+    }
+    
+    /**
+     * Copy of the live entries.
+     */
+    public Map<K, V> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<K, V> live = new HashMap<>();
+        entries.forEach((key, value) -> {
+            if (isLive(value, now)) {
+                live.put(key, value);
+            }
+        });
+        return live;
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    private void schedule(K key, V previous, V value) {
+        // An unchanged deadline is already on the wheel
+        if (value != null && (previous == null || previous.expiresAt() != value.expiresAt())) {
+            synchronized (wheel) {
+                wheel.schedule(key, value.expiresAt());
+            }
+        }
+    }
+    
+    private static boolean isLive(Expiring value, long nowMillis) {
+        return value.expiresAt() > nowMillis;
+    }
+    
+    public interface Expiring {
+        
+        /**
+         * Epoch milliseconds after which the value is gone.
+         */
+        long expiresAt();
+    }
+}
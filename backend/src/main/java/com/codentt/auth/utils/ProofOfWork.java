@@ -0,0 +1,45 @@
+package com.codentt.auth.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashcash-style puzzle: find a solution such that {@code SHA-256(nonce + ":" + solution)} starts
+ * with at least {@code difficulty} zero bits. Solving takes about {@code 2^difficulty} hashes,
+ * checking takes one.
+ */
+public class ProofOfWork {
+    
+    public static final int MAX_SOLUTION_LENGTH = 64;
+    
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    public static boolean isSolved(String nonce, String solution, int difficulty) {
+        if (solution == null || solution.isEmpty() || solution.length() > MAX_SOLUTION_LENGTH) {
+            return false;
+        }
+        MessageDigest digest = DIGESTS.get();
+        digest.update(nonce.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        byte[] hash = digest.digest(solution.getBytes(StandardCharsets.UTF_8));
+        return leadingZeroBits(hash) >= difficulty;
+    }
+    
+    static int leadingZeroBits(byte[] hash) {
+        int bits = 0;
+        for (byte b : hash) {
+            if (b != 0) {
+                return bits + Integer.numberOfLeadingZeros(b & 0xFF) - 24;
+            }
+            bits += 8;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,111 @@
+package com.codentt.auth.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: schedules items by deadline and hands them back once it has passed.
+ * <p>
+ * Level 0 has one slot per tick and every level above has slots 64 times as wide. An item goes
+ * into the lowest level whose span reaches its deadline and drops a level each time the level
+ * below wraps around, so scheduling is O(1) and advancing only touches slots whose time has come;
+ * nothing is ever scanned. Deadlines are rounded up to whole ticks. Items beyond the top level's
+ * span wait in its furthest slot and are placed again when it comes round. Not thread-safe.
+ */
+public final class TimingWheel<T> {
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    
+    private final long tickMillis;
+    private final int levels;
+    private final ArrayDeque<Timeout<T>>[][] slots;
+    private long currentTick;
+    private int size;
+    
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int levels, long nowMillis) {
+        if (tickMillis <= 0 || levels < 1 || levels * SLOT_BITS > 60) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick " + tickMillis + " ms, " + levels + " levels");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.slots = new ArrayDeque[levels][SLOTS];
+        for (ArrayDeque<Timeout<T>>[] level : slots) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new ArrayDeque<>();
+            }
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+    
+    public void schedule(T item, long deadlineMillis) {
+        long tick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        // The current tick has already fired, so the earliest an item can go is the next one
+        place(new Timeout<>(item, Math.max(tick, currentTick + 1)));
+        size++;
+    }
+    
+    /**
+     * Moves the wheel up to {@code nowMillis}, passing every item whose deadline has been reached to {@code expired}.
+     */
+    public void advance(long nowMillis, Consumer<? super T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Higher levels first: what they release may belong in a lower slot that is due now
+            int top = 0;
+            while (top + 1 < levels && (currentTick & spanMask(top + 1)) == 0) {
+                top++;
+            }
+            for (int level = top; level > 0; level--) {
+                cascade(level);
+            }
+            ArrayDeque<Timeout<T>> due = slots[0][(int) (currentTick & SLOT_MASK)];
+            Timeout<T> timeout;
+            while ((timeout = due.poll()) != null) {
+                size--;
+                expired.accept(timeout.item());
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private void cascade(int level) {
+        ArrayDeque<Timeout<T>> slot = slots[level][slotIndex(currentTick, level)];
+        List<Timeout<T>> released = new ArrayList<>(slot);
+        slot.clear();
+        released.forEach(this::place);
+    }
+    
+    private void place(Timeout<T> timeout) {
+        long delta = timeout.tick() - currentTick;
+        int level = 0;
+        while (level + 1 < levels && delta > spanMask(level + 1)) {
+            level++;
+        }
+        long tick = timeout.tick();
+        if (delta > spanMask(levels)) {
+            tick = currentTick + spanMask(levels);
+        }
+        slots[level][slotIndex(Math.max(tick, currentTick), level)].add(timeout);
+    }
+    
+    private static int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+    
+    // Ticks covered by the given number of levels, minus one
+    private static long spanMask(int levels) {
+        return (1L << (SLOT_BITS * levels)) - 1;
+    }
+    
+    private record Timeout<T>(T item, long tick) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.codentt.auth.utils;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A 32-byte token hash usable as a map or cache key. The bytes are already uniformly
+ * distributed, so the hash code is just the first four of them.
+ */
+public final class TokenHash {
+    
+    private final byte[] bytes;
+    private final int hashCode;
+    
+    private TokenHash(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+    
+    /**
+     * Wraps without copying; the caller must not modify the array afterwards.
+     */
+    public static TokenHash wrap(byte[] bytes) {
+        if (bytes.length != TokenHasher.HASH_LENGTH) {
+            throw new IllegalArgumentException("Token hash must be " + TokenHasher.HASH_LENGTH + " bytes");
+        }
+        return new TokenHash(bytes);
+    }
+    
+    public byte[] bytes() {
+        return bytes;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof TokenHash that && Arrays.equals(bytes, that.bytes);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+    
+    @Override
+    public String toString() {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
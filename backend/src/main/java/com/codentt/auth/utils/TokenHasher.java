@@ -0,0 +1,73 @@
+package com.codentt.auth.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of raw tokens, used wherever a token is stored or looked up.
+ * Each thread reuses one digest and one fixed 1 KB scratch buffer, so hashing an ASCII token of up to
+ * 1024 chars allocates nothing but the 32-byte result; longer tokens are encoded the ordinary way.
+ */
+public class TokenHasher {
+    
+    public static final int HASH_LENGTH = 32;
+    
+    private static final int SCRATCH_SIZE = 1024;
+    
+    private static final ThreadLocal<Hasher> HASHERS = ThreadLocal.withInitial(Hasher::new);
+    
+    public static TokenHash hash(String token) {
+        return TokenHash.wrap(sha256(token));
+    }
+    
+    public static byte[] sha256(String token) {
+        return HASHERS.get().digest(token);
+    }
+    
+    private static final class Hasher {
+        private final MessageDigest digest;
+        private final byte[] scratch = new byte[SCRATCH_SIZE];
+        
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+        
+        byte[] digest(String token) {
+            int length = token.length();
+            // Oversized tokens are not worth a bigger buffer that would live as long as the thread
+            if (length > scratch.length) {
+                digest.update(token.getBytes(StandardCharsets.UTF_8));
+                return finish();
+            }
+            // Every token we issue (JWTs, URL-safe random strings) is ASCII, which is its own UTF-8
+            // encoding, so it is copied char by char into the scratch buffer. Anything else is
+            // attacker-supplied and properly encoded, so distinct strings never share a hash.
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(i);
+                if (c > 0x7F) {
+                    digest.update(token.getBytes(StandardCharsets.UTF_8));
+                    return finish();
+                }
+                scratch[i] = (byte) c;
+            }
+            digest.update(scratch, 0, length);
+            return finish();
+        }
+        
+        private byte[] finish() {
+            byte[] hash = new byte[HASH_LENGTH];
+            try {
+                digest.digest(hash, 0, HASH_LENGTH);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return hash;
+        }
+    }
+}
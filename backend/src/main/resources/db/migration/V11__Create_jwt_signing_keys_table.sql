@@ -0,0 +1,14 @@
+-- Create jwt_signing_keys table (asymmetric JWT key ring)
+CREATE TABLE IF NOT EXISTS jwt_signing_keys (
+    id BIGSERIAL PRIMARY KEY,
+    kid VARCHAR(64) NOT NULL UNIQUE,
+    algorithm VARCHAR(10) NOT NULL,
+    public_key BYTEA NOT NULL,
+    private_key BYTEA NOT NULL,
+    activates_at TIMESTAMP NOT NULL,
+    retired_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create indexes
+CREATE INDEX IF NOT EXISTS idx_jwt_signing_keys_retired_at ON jwt_signing_keys(retired_at);
@@ -0,0 +1,11 @@
+-- Create rate_limit_counters table (shared rate limits across nodes)
+-- UNLOGGED: counters are disposable, so they skip the WAL and a crash simply resets them
+CREATE UNLOGGED TABLE IF NOT EXISTS rate_limit_counters (
+    bucket_key VARCHAR(255) NOT NULL,
+    window_start BIGINT NOT NULL,
+    window_end BIGINT NOT NULL,
+    hits INTEGER NOT NULL,
+    PRIMARY KEY (bucket_key, window_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rate_limit_counters_window_end ON rate_limit_counters(window_end);
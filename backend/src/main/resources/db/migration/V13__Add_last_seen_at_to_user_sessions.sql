@@ -0,0 +1,2 @@
+-- Add last_seen_at to user_sessions (written in batches by the session registry)
+ALTER TABLE user_sessions ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMP;
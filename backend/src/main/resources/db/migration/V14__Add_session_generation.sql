@@ -0,0 +1,10 @@
+-- Add session_generation to users (bumped by logout-all, carried in access tokens as "gen")
+ALTER TABLE users ADD COLUMN IF NOT EXISTS session_generation INTEGER NOT NULL DEFAULT 0;
+
+-- Create session_epoch table (single row; tokens issued before revoked_before are rejected)
+CREATE TABLE IF NOT EXISTS session_epoch (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    revoked_before TIMESTAMP
+);
+
+INSERT INTO session_epoch (id, revoked_before) VALUES (1, NULL) ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,4 @@
+-- Add expiry indexes used by the chunked expiry reaper
+-- (user_sessions and login_challenges already have one)
+CREATE INDEX IF NOT EXISTS idx_otps_expiry_date ON otps(expiry_date);
+CREATE INDEX IF NOT EXISTS idx_verification_tokens_expiry_date ON verification_tokens(expiry_date);
@@ -0,0 +1,92 @@
+-- Convert user_sessions and login_challenges to daily range partitions on their expiry column.
+-- Expired data is removed by dropping whole partitions instead of row-by-row deletes.
+-- Only unexpired rows are carried over.
+
+-- Creates one partition per day in [from_day, to_day]; also called at runtime by PartitionMaintenanceService
+CREATE OR REPLACE FUNCTION create_daily_partitions(parent TEXT, from_day DATE, to_day DATE) RETURNS VOID AS $$
+DECLARE
+    day DATE := from_day;
+BEGIN
+    WHILE day <= to_day LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       parent || '_p' || to_char(day, 'YYYYMMDD'), parent, day, day + 1);
+        day := day + 1;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- user_sessions
+ALTER TABLE user_sessions RENAME TO user_sessions_legacy;
+ALTER INDEX user_sessions_pkey RENAME TO user_sessions_legacy_pkey;
+DROP INDEX IF EXISTS idx_user_sessions_user_id;
+DROP INDEX IF EXISTS idx_user_sessions_access_token_hash;
+DROP INDEX IF EXISTS idx_user_sessions_is_active;
+DROP INDEX IF EXISTS idx_user_sessions_expires_at;
+
+CREATE TABLE user_sessions (
+    id BIGINT NOT NULL DEFAULT nextval('user_sessions_id_seq'),
+    user_id BIGINT NOT NULL,
+    access_token_hash VARCHAR(255) NOT NULL,
+    refresh_token_hash VARCHAR(255),
+    device_info VARCHAR(255),
+    ip_address VARCHAR(45),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    last_seen_at TIMESTAMP,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    PRIMARY KEY (id, expires_at),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (expires_at);
+
+ALTER SEQUENCE user_sessions_id_seq OWNED BY user_sessions.id;
+
+SELECT create_daily_partitions('user_sessions', CURRENT_DATE - 1,
+        GREATEST(CURRENT_DATE + 7, (SELECT MAX(expires_at)::DATE FROM user_sessions_legacy)));
+
+INSERT INTO user_sessions (id, user_id, access_token_hash, refresh_token_hash, device_info, ip_address,
+                           created_at, expires_at, last_seen_at, is_active)
+SELECT id, user_id, access_token_hash, refresh_token_hash, device_info, ip_address,
+       created_at, expires_at, last_seen_at, is_active
+FROM user_sessions_legacy
+WHERE expires_at >= CURRENT_DATE - 1;
+
+DROP TABLE user_sessions_legacy;
+
+CREATE INDEX IF NOT EXISTS idx_user_sessions_user_id ON user_sessions(user_id);
+CREATE INDEX IF NOT EXISTS idx_user_sessions_access_token_hash ON user_sessions(access_token_hash);
+
+-- login_challenges
+ALTER TABLE login_challenges RENAME TO login_challenges_legacy;
+ALTER INDEX login_challenges_pkey RENAME TO login_challenges_legacy_pkey;
+DROP INDEX IF EXISTS idx_challenge_token;
+DROP INDEX IF EXISTS idx_expiry;
+
+-- Uniqueness must include the partition key; tokens are random, so per-day uniqueness is enough.
+-- Its index also serves token lookups, and expiry needs no index once partitions are dropped whole.
+CREATE TABLE login_challenges (
+    id BIGINT NOT NULL DEFAULT nextval('login_challenges_id_seq'),
+    challenge_token VARCHAR(255) NOT NULL,
+    challenge_type VARCHAR(50) NOT NULL,
+    question TEXT NOT NULL,
+    correct_answer TEXT NOT NULL,
+    options TEXT NOT NULL,
+    expiry_date TIMESTAMP NOT NULL,
+    used BOOLEAN NOT NULL DEFAULT FALSE,
+    attempt_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, expiry_date),
+    UNIQUE (challenge_token, expiry_date)
+) PARTITION BY RANGE (expiry_date);
+
+ALTER SEQUENCE login_challenges_id_seq OWNED BY login_challenges.id;
+
+SELECT create_daily_partitions('login_challenges', CURRENT_DATE - 1, CURRENT_DATE + 7);
+
+INSERT INTO login_challenges (id, challenge_token, challenge_type, question, correct_answer, options,
+                              expiry_date, used, attempt_count, created_at)
+SELECT id, challenge_token, challenge_type, question, correct_answer, options,
+       expiry_date, used, attempt_count, created_at
+FROM login_challenges_legacy
+WHERE expiry_date >= CURRENT_DATE - 1;
+
+DROP TABLE login_challenges_legacy;
@@ -0,0 +1,13 @@
+-- Create scheduler_leases table (one row per cluster-wide scheduled job)
+CREATE TABLE IF NOT EXISTS scheduler_leases (
+    job_name VARCHAR(100) PRIMARY KEY,
+    owner VARCHAR(255) NOT NULL,
+    lease_until TIMESTAMP NOT NULL,
+    acquired_at TIMESTAMP NOT NULL,
+    last_started_at TIMESTAMP,
+    last_finished_at TIMESTAMP,
+    last_duration_ms BIGINT,
+    last_status VARCHAR(20),
+    last_error TEXT,
+    run_count BIGINT NOT NULL DEFAULT 0
+);
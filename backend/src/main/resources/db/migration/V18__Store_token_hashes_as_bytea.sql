@@ -0,0 +1,9 @@
+-- Store session token hashes as raw 32-byte SHA-256 digests instead of Base64 text.
+-- Halves the access_token_hash index and turns lookups into fixed-width byte comparisons.
+ALTER TABLE user_sessions
+    ALTER COLUMN access_token_hash TYPE BYTEA USING decode(access_token_hash, 'base64'),
+    ALTER COLUMN refresh_token_hash TYPE BYTEA USING decode(refresh_token_hash, 'base64');
+
+ALTER TABLE user_sessions
+    ADD CONSTRAINT chk_user_sessions_access_token_hash_length CHECK (octet_length(access_token_hash) = 32),
+    ADD CONSTRAINT chk_user_sessions_refresh_token_hash_length CHECK (octet_length(refresh_token_hash) = 32);
@@ -0,0 +1,2 @@
+-- Proof-of-work difficulty (leading zero bits) for PROOF_OF_WORK challenges; propagates to every partition
+ALTER TABLE login_challenges ADD COLUMN IF NOT EXISTS difficulty INTEGER;
@@ -0,0 +1,19 @@
+-- Keep a single active (unused) OTP per identifier and type; resends reuse or rotate that row in place
+
+-- Retire all but the newest active OTP of each identifier and type
+UPDATE otps o SET used = TRUE
+WHERE o.used = FALSE
+  AND EXISTS (
+      SELECT 1 FROM otps newer
+      WHERE newer.identifier = o.identifier
+        AND newer.otp_type = o.otp_type
+        AND newer.used = FALSE
+        AND (newer.created_at, newer.id) > (o.created_at, o.id)
+  );
+
+ALTER TABLE otps ADD COLUMN IF NOT EXISTS last_sent_at TIMESTAMP;
+UPDATE otps SET last_sent_at = created_at WHERE last_sent_at IS NULL;
+ALTER TABLE otps ALTER COLUMN last_sent_at SET NOT NULL;
+
+-- Upsert target and the lookup used by verification
+CREATE UNIQUE INDEX IF NOT EXISTS uk_otps_active ON otps(identifier, otp_type) WHERE used = FALSE;
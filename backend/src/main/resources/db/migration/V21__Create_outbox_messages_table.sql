@@ -0,0 +1,18 @@
+-- Create outbox_messages table (emails and SMS written with the transaction that needs them, sent asynchronously)
+CREATE TABLE IF NOT EXISTS outbox_messages (
+    id BIGSERIAL PRIMARY KEY,
+    message_type VARCHAR(50) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+-- Dispatcher claims; sent messages are deleted, so this stays small
+CREATE INDEX IF NOT EXISTS idx_outbox_messages_due ON outbox_messages(next_attempt_at) WHERE status = 'PENDING';
+-- Expiry reaper
+CREATE INDEX IF NOT EXISTS idx_outbox_messages_expires_at ON outbox_messages(expires_at);
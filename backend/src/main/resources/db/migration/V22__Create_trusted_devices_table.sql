@@ -0,0 +1,17 @@
+-- Create trusted_devices table (trusted-device tokens, bound to the session they were issued with)
+-- Not partitioned: these outlive the daily session partitions. Rows are written by the session flush.
+CREATE TABLE IF NOT EXISTS trusted_devices (
+    id BIGSERIAL PRIMARY KEY,
+    token_hash BYTEA NOT NULL UNIQUE,
+    session_token_hash BYTEA NOT NULL,
+    user_id BIGINT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked BOOLEAN NOT NULL DEFAULT FALSE,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT chk_trusted_devices_token_hash_length CHECK (octet_length(token_hash) = 32)
+);
+
+-- Logging a session out revokes the device trusted through it
+CREATE INDEX IF NOT EXISTS idx_trusted_devices_session_token_hash ON trusted_devices(session_token_hash);
+-- Expiry reaper
+CREATE INDEX IF NOT EXISTS idx_trusted_devices_expires_at ON trusted_devices(expires_at);
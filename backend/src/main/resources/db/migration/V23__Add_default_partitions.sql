@@ -0,0 +1,36 @@
+-- Catch-all partitions for user_sessions and login_challenges (see V16), so inserts keep working
+-- when PartitionMaintenanceService falls more than app.partitions.days-ahead days behind.
+CREATE TABLE IF NOT EXISTS user_sessions_default PARTITION OF user_sessions DEFAULT;
+CREATE TABLE IF NOT EXISTS login_challenges_default PARTITION OF login_challenges DEFAULT;
+
+-- Postgres refuses to create a partition for a range that already has rows in the default partition.
+-- Such a day is built as a plain table instead: its rows are moved out of the default partition into
+-- it, and it is then attached in their place.
+CREATE OR REPLACE FUNCTION create_daily_partitions(parent TEXT, from_day DATE, to_day DATE) RETURNS VOID AS $$
+DECLARE
+    day DATE := from_day;
+    partition TEXT;
+    key_column TEXT := substring(pg_get_partkeydef(parent::regclass) FROM '\((\w+)\)');
+    stranded BOOLEAN;
+BEGIN
+    WHILE day <= to_day LOOP
+        partition := parent || '_p' || to_char(day, 'YYYYMMDD');
+        IF to_regclass(partition) IS NULL THEN
+            EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE %I >= %L AND %I < %L)',
+                           parent || '_default', key_column, day, key_column, day + 1) INTO stranded;
+            IF stranded THEN
+                EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition, parent);
+                EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) '
+                               'INSERT INTO %I SELECT * FROM moved',
+                               parent || '_default', key_column, day, key_column, day + 1, partition);
+                EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                               parent, partition, day, day + 1);
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                               partition, parent, day, day + 1);
+            END IF;
+        END IF;
+        day := day + 1;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,82 @@
+package com.codentt.auth.security;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachedBodyHttpServletRequestTest {
+    
+    @Test
+    void bodyCanBeReadAgainAfterCaching() throws IOException {
+        CachedBodyHttpServletRequest cached = new CachedBodyHttpServletRequest(request("{\"a\":1}", false), 64);
+        
+        assertThat(cached.getBody()).asString(StandardCharsets.UTF_8).isEqualTo("{\"a\":1}");
+        assertThat(cached.getInputStream().readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo("{\"a\":1}");
+        assertThat(cached.getReader().readLine()).isEqualTo("{\"a\":1}");
+    }
+    
+    @Test
+    void acceptsABodyOfExactlyTheLimit() throws IOException {
+        assertThat(new CachedBodyHttpServletRequest(request("x".repeat(64), false), 64).getBody()).hasSize(64);
+    }
+    
+    @Test
+    void refusesDeclaredLengthsOverTheLimit() {
+        assertThatThrownBy(() -> new CachedBodyHttpServletRequest(request("x".repeat(65), false), 64))
+                .isInstanceOf(CachedBodyHttpServletRequest.BodyTooLargeException.class);
+    }
+    
+    @Test
+    void refusesChunkedBodiesOverTheLimit() {
+        assertThatThrownBy(() -> new CachedBodyHttpServletRequest(request("x".repeat(65), true), 64))
+                .isInstanceOf(CachedBodyHttpServletRequest.BodyTooLargeException.class);
+    }
+    
+    @Test
+    void readListenerIsToldEverythingIsAvailable() throws IOException {
+        ServletInputStream input = new CachedBodyHttpServletRequest(request("hello", false), 64).getInputStream();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        boolean[] allRead = new boolean[1];
+        
+        input.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (input.isReady() && !input.isFinished()) {
+                    received.write(input.read());
+                }
+            }
+            
+            @Override
+            public void onAllDataRead() {
+                allRead[0] = true;
+            }
+            
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+        
+        assertThat(received.toString(StandardCharsets.UTF_8)).isEqualTo("hello");
+        assertThat(allRead[0]).isTrue();
+    }
+    
+    private static MockHttpServletRequest request(String body, boolean chunked) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return chunked ? -1 : super.getContentLengthLong();
+            }
+        };
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
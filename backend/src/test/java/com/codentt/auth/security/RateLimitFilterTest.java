@@ -0,0 +1,119 @@
+package com.codentt.auth.security;
+
+import com.codentt.auth.config.RateLimitProperties;
+import com.codentt.auth.service.RateLimitBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTest {
+    
+    private final RateLimitBackend backend = mock(RateLimitBackend.class);
+    private RateLimitFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties.Policy loginIp = new RateLimitProperties.Policy();
+        loginIp.setName("login-ip");
+        loginIp.setPath("/auth/login");
+        loginIp.setMethod("POST");
+        loginIp.setCapacity(1);
+        loginIp.setPeriod(60_000);
+        RateLimitProperties.Policy loginAccount = new RateLimitProperties.Policy();
+        loginAccount.setName("login-account");
+        loginAccount.setPath("/auth/login");
+        loginAccount.setMethod("POST");
+        loginAccount.setKey(RateLimitProperties.KeyType.ACCOUNT);
+        loginAccount.setAccountField("usernameOrEmail");
+        loginAccount.setCapacity(1);
+        loginAccount.setPeriod(60_000);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaxBodySize(1024);
+        properties.setPolicies(List.of(loginIp, loginAccount));
+        
+        ClientIpResolver clientIpResolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(clientIpResolver, "trustedProxies", "");
+        clientIpResolver.init();
+        
+        filter = new RateLimitFilter(properties, backend, new ObjectMapper(), new SimpleMeterRegistry(), clientIpResolver);
+        when(backend.tryAcquire(any(), anyString())).thenReturn(5_000L);
+    }
+    
+    @Test
+    void limitsThePlainPath() throws Exception {
+        MockHttpServletResponse response = post("/auth/login");
+        
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("5");
+    }
+    
+    @Test
+    void limitsPercentEncodedPaths() throws Exception {
+        assertThat(post("/auth/%6cogin").getStatus()).isEqualTo(429);
+        assertThat(post("/auth/%6C%6F%67%69%6E").getStatus()).isEqualTo(429);
+    }
+    
+    @Test
+    void limitsPathsWithParametersAndDoubleSlashes() throws Exception {
+        assertThat(post("/auth/login;jsessionid=x").getStatus()).isEqualTo(429);
+        assertThat(post("/auth//login").getStatus()).isEqualTo(429);
+    }
+    
+    @Test
+    void limitsUnderAContextPath() throws Exception {
+        MockHttpServletRequest request = request("/api/auth/%6cogin");
+        request.setContextPath("/api");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, new MockFilterChain());
+        
+        assertThat(response.getStatus()).isEqualTo(429);
+    }
+    
+    @Test
+    void refusesOversizedBodiesBeforeBufferingThem() throws Exception {
+        MockHttpServletRequest request = request("/auth/login");
+        request.setContent(("{\"usernameOrEmail\":\"" + "a".repeat(2048) + "\"}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        filter.doFilter(request, response, new MockFilterChain());
+        
+        assertThat(response.getStatus()).isEqualTo(413);
+        verify(backend, never()).tryAcquire(any(), anyString());
+    }
+    
+    @Test
+    void leavesOtherPathsAlone() throws Exception {
+        assertThat(post("/auth/%72egister").getStatus()).isEqualTo(200);
+        verify(backend, never()).tryAcquire(any(), anyString());
+    }
+    
+    private MockHttpServletResponse post(String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(uri), response, new MockFilterChain());
+        return response;
+    }
+    
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setRemoteAddr("203.0.113.7");
+        request.setContent("{}".getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,53 @@
+package com.codentt.auth.service;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtServiceTest {
+    
+    private static final String SECRET = "test-secret-that-is-at-least-32-characters-long";
+    
+    @Test
+    void acceptsHmacTokensInHmacMode() {
+        JwtService hmac = newService(false, "");
+        
+        assertThat(hmac.verifyToken(hmac.generateToken("alice", Map.of())).getSubject()).isEqualTo("alice");
+    }
+    
+    @Test
+    void rejectsHmacTokensInAsymmetricModeWithoutACutover() {
+        String token = newService(false, "").generateToken("alice", Map.of());
+        
+        assertThatThrownBy(() -> newService(true, "").verifyToken(token)).isInstanceOf(JwtException.class);
+    }
+    
+    @Test
+    void acceptsHmacTokensInAsymmetricModeUntilTheCutover() {
+        String token = newService(false, "").generateToken("alice", Map.of());
+        
+        assertThat(newService(true, Instant.now().plusSeconds(3600).toString()).verifyToken(token).getSubject())
+                .isEqualTo("alice");
+        assertThatThrownBy(() -> newService(true, Instant.now().minusSeconds(1).toString()).verifyToken(token))
+                .isInstanceOf(JwtException.class);
+    }
+    
+    private static JwtService newService(boolean asymmetric, String hmacAcceptedUntil) {
+        JwtKeyRingService keyRing = mock(JwtKeyRingService.class);
+        when(keyRing.isAsymmetric()).thenReturn(asymmetric);
+        JwtService service = new JwtService(keyRing);
+        ReflectionTestUtils.setField(service, "secret", SECRET);
+        ReflectionTestUtils.setField(service, "expiration", 60_000L);
+        ReflectionTestUtils.setField(service, "hmacAcceptedUntil", hmacAcceptedUntil);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,158 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LoginAttemptServiceTest {
+    
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final LoginAttemptService service =
+            new LoginAttemptService(jdbcTemplate, transactionTemplate, new SimpleMeterRegistry());
+    
+    private final List<Batch> batches = new ArrayList<>();
+    // Runs inside the flush transaction, after the flush has taken its snapshot
+    private Runnable duringFlush = () -> { };
+    private User user;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxLoginAttempts", 5);
+        ReflectionTestUtils.setField(service, "lockoutDuration", 900_000L);
+        user = User.builder().id(7L).failedLoginAttempts(2).accountNonLocked(true).build();
+        
+        doAnswer(invocation -> {
+            Collection<?> rows = invocation.getArgument(1);
+            List<Long> userIds = rows.stream().map(row -> (Long) ((Map.Entry<?, ?>) row).getKey()).toList();
+            batches.add(new Batch(invocation.getArgument(0), userIds));
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(mock(TransactionStatus.class));
+            Runnable concurrent = duringFlush;
+            duringFlush = () -> { };
+            concurrent.run();
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+    
+    @Test
+    void flushedFailuresAreDropped() {
+        service.recordFailure(user);
+        
+        service.flush();
+        assertThat(failures()).containsExactly(7L);
+        
+        batches.clear();
+        service.flush();
+        assertThat(batches).isEmpty();
+    }
+    
+    @Test
+    void resetDuringFlushIsWrittenByTheNextFlush() {
+        service.recordFailure(user);
+        duringFlush = () -> service.reset(user);
+        
+        service.flush();
+        assertThat(service.state(user).failures()).isZero();
+        
+        batches.clear();
+        service.flush();
+        assertThat(resets()).containsExactly(7L);
+        assertThat(failures()).isEmpty();
+    }
+    
+    @Test
+    void failureAfterResetDuringFlushIsKept() {
+        service.recordFailure(user);
+        duringFlush = () -> {
+            service.reset(user);
+            service.recordFailure(user);
+        };
+        
+        service.flush();
+        assertThat(service.state(user).failures()).isEqualTo(1);
+        
+        batches.clear();
+        service.flush();
+        assertThat(resets()).containsExactly(7L);
+        assertThat(failures()).containsExactly(7L);
+    }
+    
+    @Test
+    void failureDuringFlushIsKeptForTheNextFlush() {
+        service.recordFailure(user);
+        duringFlush = () -> service.recordFailure(user);
+        
+        service.flush();
+        assertThat(service.state(user).failures()).isEqualTo(4);
+        
+        batches.clear();
+        service.flush();
+        assertThat(resets()).isEmpty();
+        assertThat(failures()).containsExactly(7L);
+    }
+    
+    @Test
+    void failedFlushKeepsEverythingBuffered() {
+        service.recordFailure(user);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("database down");
+        }).when(transactionTemplate).executeWithoutResult(any());
+        
+        service.flush();
+        
+        assertThat(service.state(user).failures()).isEqualTo(3);
+    }
+    
+    @Test
+    void lockoutEndsAfterTheConfiguredDuration() {
+        for (int i = 0; i < 3; i++) {
+            service.recordFailure(user);
+        }
+        
+        LoginAttemptService.State state = service.state(user);
+        assertThat(state.locked()).isTrue();
+        assertThat(state.lockedUntil()).isEqualTo(state.lockoutTime().plusMinutes(15));
+    }
+    
+    private List<Long> resets() {
+        return userIds("failed_login_attempts = 0");
+    }
+    
+    private List<Long> failures() {
+        return userIds("failed_login_attempts + ?");
+    }
+    
+    private List<Long> userIds(String sqlFragment) {
+        return batches.stream()
+                .filter(batch -> batch.sql().contains(sqlFragment))
+                .flatMap(batch -> batch.userIds().stream())
+                .toList();
+    }
+    
+    private record Batch(String sql, List<Long> userIds) {
+    }
+}
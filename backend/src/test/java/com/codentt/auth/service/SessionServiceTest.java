@@ -0,0 +1,110 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.User;
+import com.codentt.auth.exception.ServiceUnavailableException;
+import com.codentt.auth.repository.UserSessionRepository;
+import com.codentt.auth.utils.TokenHash;
+import com.codentt.auth.utils.TokenHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SessionServiceTest {
+    
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionService service = new SessionService(
+            mock(UserSessionRepository.class), jdbcTemplate, transactionTemplate, meterRegistry);
+    
+    private final User user = User.builder().id(7L).build();
+    private boolean databaseDown = true;
+    private int logins;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "tokenExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(service, "trustedDeviceExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(service, "maxBuffered", 2);
+        ReflectionTestUtils.setField(service, "maxPending", 3);
+        ReflectionTestUtils.setField(service, "maxPendingTouches", 10);
+        ReflectionTestUtils.setField(service, "flushInterval", 1000L);
+        
+        doAnswer(invocation -> {
+            if (databaseDown) {
+                throw new QueryTimeoutException("database unavailable");
+            }
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+    
+    @Test
+    void loginFailsFastOnceTheBufferIsFull() {
+        login();
+        login();
+        login();
+        
+        assertThatThrownBy(this::login)
+                .isInstanceOf(ServiceUnavailableException.class)
+                .satisfies(e -> assertThat(((ServiceUnavailableException) e).getRetryAfterSeconds()).isEqualTo(1));
+        assertThat(meterRegistry.counter("auth.sessions.rejected").count()).isEqualTo(1);
+    }
+    
+    @Test
+    void fullBufferIsFlushedBeforeTurningLoginsAway() {
+        login();
+        login();
+        login();
+        databaseDown = false;
+        
+        login();
+        
+        assertThat(meterRegistry.counter("auth.sessions.rejected").count()).isZero();
+    }
+    
+    @Test
+    void oldestTouchesAreDroppedFirst() {
+        Map<TokenHash, LocalDateTime> pendingTouches = pendingTouches();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 10; i++) {
+            pendingTouches.put(TokenHasher.hash("token-" + i), now.minusMinutes(i));
+        }
+        
+        service.touch("fresh");
+        
+        // 11 touches against a bound of 10: the excess and a tenth of the bound go, oldest first
+        assertThat(pendingTouches).hasSize(9)
+                .containsKey(TokenHasher.hash("fresh"))
+                .containsKey(TokenHasher.hash("token-7"))
+                .doesNotContainKey(TokenHasher.hash("token-8"))
+                .doesNotContainKey(TokenHasher.hash("token-9"));
+        assertThat(meterRegistry.counter("auth.sessions.touches-dropped").count()).isEqualTo(2);
+    }
+    
+    private void login() {
+        int n = logins++;
+        service.createSession(user, "access-" + n, "refresh-" + n, null, "test", "127.0.0.1");
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<TokenHash, LocalDateTime> pendingTouches() {
+        return (Map<TokenHash, LocalDateTime>) ReflectionTestUtils.getField(service, "pendingTouches");
+    }
+}
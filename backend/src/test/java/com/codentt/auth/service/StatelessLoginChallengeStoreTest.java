@@ -0,0 +1,130 @@
+package com.codentt.auth.service;
+
+import com.codentt.auth.entity.LoginChallenge;
+import com.codentt.auth.exception.BadRequestException;
+import com.codentt.auth.exception.UnauthorizedException;
+import com.codentt.auth.utils.ProofOfWork;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatelessLoginChallengeStoreTest {
+    
+    private static final List<String> OPTIONS = List.of("Question", "Request", "Statement", "Complaint");
+    
+    private StatelessLoginChallengeStore store;
+    
+    @BeforeEach
+    void setUp() {
+        store = newStore("test-secret-that-is-at-least-32-characters-long");
+    }
+    
+    @Test
+    void acceptsTheCorrectAnswerOnce() {
+        String token = issueIntent(LocalDateTime.now().plusSeconds(30));
+        
+        assertThat(store.verify(token, List.of("Request"), 0)).isTrue();
+        assertThatThrownBy(() -> store.verify(token, List.of("Request"), 0))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+    
+    @Test
+    void wrongAnswerUsesUpTheChallenge() {
+        String token = issueIntent(LocalDateTime.now().plusSeconds(30));
+        
+        assertThat(store.verify(token, List.of("Question"), 0)).isFalse();
+        assertThatThrownBy(() -> store.verify(token, List.of("Request"), 0))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+    
+    @Test
+    void rejectsExpiredChallenges() {
+        String token = issueIntent(LocalDateTime.now().minusSeconds(1));
+        
+        assertThatThrownBy(() -> store.verify(token, List.of("Request"), 0))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+    
+    @Test
+    void rejectsTamperedPayloads() {
+        String token = issueIntent(LocalDateTime.now().plusSeconds(30));
+        int dot = token.indexOf('.');
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+        payload[2] ^= 1; // difficulty
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(payload) + token.substring(dot);
+        
+        assertThatThrownBy(() -> store.verify(tampered, List.of("Request"), 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+    
+    @Test
+    void rejectsMalformedTokens() {
+        assertThatThrownBy(() -> store.verify("no-dot", List.of("Request"), 0))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> store.verify("!!!.???", List.of("Request"), 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+    
+    @Test
+    void rejectsTokensSealedWithAnotherSecret() {
+        String foreign = newStore("another-secret-that-is-at-least-32-characters").issue(
+                LoginChallenge.ChallengeType.INTENT_SELECTION, "Intent?", OPTIONS, List.of("Request"), 0,
+                LocalDateTime.now().plusSeconds(30));
+        
+        assertThatThrownBy(() -> store.verify(foreign, List.of("Request"), 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+    
+    @Test
+    void questionChallengesFailWhileProofOfWorkIsRequired() {
+        String token = issueIntent(LocalDateTime.now().plusSeconds(30));
+        
+        assertThat(store.verify(token, List.of("Request"), 16)).isFalse();
+    }
+    
+    @Test
+    void acceptsSolvedProofOfWorkOfTheRequiredDifficulty() {
+        String token = store.issue(LoginChallenge.ChallengeType.PROOF_OF_WORK, "Solve", List.of(), List.of(), 8,
+                LocalDateTime.now().plusSeconds(30));
+        String solution = solve(token, 8);
+        
+        assertThat(store.verify(token, List.of(solution), 8)).isTrue();
+    }
+    
+    @Test
+    void rejectsProofOfWorkBelowTheRequiredDifficulty() {
+        String token = store.issue(LoginChallenge.ChallengeType.PROOF_OF_WORK, "Solve", List.of(), List.of(), 8,
+                LocalDateTime.now().plusSeconds(30));
+        String solution = solve(token, 8);
+        
+        assertThat(store.verify(token, List.of(solution), 10)).isFalse();
+    }
+    
+    private String issueIntent(LocalDateTime expiresAt) {
+        return store.issue(LoginChallenge.ChallengeType.INTENT_SELECTION, "Intent?", OPTIONS, List.of("Request"), 0,
+                expiresAt);
+    }
+    
+    private static String solve(String nonce, int difficulty) {
+        for (long candidate = 0; ; candidate++) {
+            String solution = Long.toString(candidate);
+            if (ProofOfWork.isSolved(nonce, solution, difficulty)) {
+                return solution;
+            }
+        }
+    }
+    
+    private static StatelessLoginChallengeStore newStore(String secret) {
+        StatelessLoginChallengeStore store = new StatelessLoginChallengeStore();
+        ReflectionTestUtils.setField(store, "secret", secret);
+        store.init();
+        return store;
+    }
+}
@@ -0,0 +1,101 @@
+package com.codentt.auth.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringMapTest {
+    
+    private static final long TICK = 10;
+    
+    private ExpiringMap<String, Entry> map;
+    private long now;
+    
+    @BeforeEach
+    void setUp() {
+        map = new ExpiringMap<>(TICK);
+        now = System.currentTimeMillis();
+    }
+    
+    @Test
+    void expireDropsDueEntriesOnly() {
+        map.put("short", new Entry("a", now + 100));
+        map.put("long", new Entry("b", now + 60_000));
+        
+        map.expire(now + 200);
+        
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get("long")).isEqualTo(new Entry("b", now + 60_000));
+    }
+    
+    @Test
+    void extendedDeadlineSurvivesTheOldOne() {
+        map.put("key", new Entry("a", now + 100));
+        map.put("key", new Entry("b", now + 60_000));
+        
+        map.expire(now + 200);
+        
+        assertThat(map.get("key")).isEqualTo(new Entry("b", now + 60_000));
+    }
+    
+    @Test
+    void shortenedDeadlineIsRescheduled() {
+        map.put("key", new Entry("a", now + 60_000));
+        map.compute("key", (key, current) -> new Entry("b", now + 100));
+        
+        map.expire(now + 200);
+        
+        assertThat(map.size()).isZero();
+    }
+    
+    @Test
+    void replacementWithTheSameDeadlineStillExpires() {
+        map.put("key", new Entry("a", now + 100));
+        map.put("key", new Entry("b", now + 100));
+        
+        map.expire(now + 200);
+        
+        assertThat(map.size()).isZero();
+    }
+    
+    @Test
+    void keyRemovedAndPutAgainKeepsItsNewValue() {
+        map.put("key", new Entry("a", now + 100));
+        map.remove("key");
+        map.put("key", new Entry("b", now + 60_000));
+        
+        map.expire(now + 200);
+        
+        assertThat(map.get("key")).isEqualTo(new Entry("b", now + 60_000));
+    }
+    
+    @Test
+    void expiredValuesReadAsAbsentBeforeTheWheelRemovesThem() {
+        map.put("key", new Entry("a", now - 1));
+        
+        assertThat(map.get("key")).isNull();
+        assertThat(map.remove("key")).isNull();
+    }
+    
+    @Test
+    void computeSeesAnExpiredValueAsNull() {
+        map.put("key", new Entry("a", now - 1));
+        
+        Entry seen = map.compute("key", (key, current) -> current != null ? current : new Entry("fresh", now + 60_000));
+        
+        assertThat(seen.value()).isEqualTo("fresh");
+    }
+    
+    @Test
+    void removeIfOnlyRemovesMatchingLiveValues() {
+        map.put("key", new Entry("a", now + 60_000));
+        
+        assertThat(map.removeIf("key", entry -> entry.value().equals("b"))).isFalse();
+        assertThat(map.removeIf("key", entry -> entry.value().equals("a"))).isTrue();
+        assertThat(map.size()).isZero();
+    }
+    
+    private record Entry(String value, long expiresAt) implements ExpiringMap.Expiring {
+    }
+}
@@ -0,0 +1,119 @@
+package com.codentt.auth.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+    
+    @Test
+    void roundsDeadlinesUpToWholeTicks() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 3, 0);
+        wheel.schedule("a", 1500);
+        
+        assertThat(advance(wheel, 1999)).isEmpty();
+        assertThat(advance(wheel, 2000)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 1000);
+        wheel.schedule("late", 500);
+        
+        assertThat(advance(wheel, 1009)).isEmpty();
+        assertThat(advance(wheel, 1010)).containsExactly("late");
+    }
+    
+    @Test
+    void itemsOnHigherLevelsCascadeDownAndFireOnTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 3, 0);
+        wheel.schedule("level0", 63);
+        wheel.schedule("level1", 64 + 37);
+        wheel.schedule("level2", 4096 + 64 * 5 + 3);
+        
+        assertThat(advance(wheel, 62)).isEmpty();
+        assertThat(advance(wheel, 63)).containsExactly("level0");
+        assertThat(advance(wheel, 100)).isEmpty();
+        assertThat(advance(wheel, 101)).containsExactly("level1");
+        assertThat(advance(wheel, 4096 + 64 * 5 + 2)).isEmpty();
+        assertThat(advance(wheel, 4096 + 64 * 5 + 3)).containsExactly("level2");
+    }
+    
+    @Test
+    void levelWrapDoesNotReleaseItemsEarly() {
+        // Scheduled at tick 100 for tick 4190: its level-1 slot is the current one, so it must wait a full turn
+        TimingWheel<String> wheel = new TimingWheel<>(1, 2, 100);
+        wheel.schedule("wrapped", 4190);
+        
+        assertThat(advance(wheel, 4189)).isEmpty();
+        assertThat(advance(wheel, 4190)).containsExactly("wrapped");
+    }
+    
+    @Test
+    void clampsDeadlinesBeyondTheTopLevelAndPlacesThemAgain() {
+        // Two levels span 4096 ticks; this deadline needs the furthest slot to come round twice
+        TimingWheel<String> wheel = new TimingWheel<>(1, 2, 0);
+        wheel.schedule("far", 10_000);
+        
+        for (long now = 0; now < 10_000; now += 97) {
+            assertThat(advance(wheel, now)).isEmpty();
+        }
+        assertThat(advance(wheel, 9_999)).isEmpty();
+        assertThat(advance(wheel, 10_000)).containsExactly("far");
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void everyItemFiresExactlyAtItsDeadline() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 3, 0);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int item = 0; item < 2_000; item++) {
+            long deadline = 1 + random.nextInt(300_000);
+            deadlines.put(item, deadline);
+            wheel.schedule(item, deadline);
+        }
+        
+        Map<Integer, Long> fired = new HashMap<>();
+        for (long now = 1; now <= 300_000; now++) {
+            long tick = now;
+            wheel.advance(now, item -> fired.put(item, tick));
+        }
+        
+        assertThat(fired).isEqualTo(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void largeJumpReleasesEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 3, 0);
+        wheel.schedule("a", 5);
+        wheel.schedule("b", 5_000);
+        wheel.schedule("c", 200_000);
+        wheel.schedule("d", 400_000);
+        
+        assertThat(advance(wheel, 300_000)).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+    
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThatThrownBy(() -> new TimingWheel<>(0, 3, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimingWheel<>(1, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimingWheel<>(1, 11, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static <T> List<T> advance(TimingWheel<T> wheel, long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        wheel.advance(nowMillis, expired::add);
+        return expired;
+    }
+}
@@ -0,0 +1,33 @@
+package com.codentt.auth.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenHasherTest {
+    
+    @Test
+    void asciiTokenMatchesPlainSha256() throws Exception {
+        assertMatchesSha256("eyJhbGciOiJIUzI1NiJ9.payload.signature");
+    }
+    
+    @Test
+    void tokenLongerThanScratchBufferMatchesPlainSha256() throws Exception {
+        assertMatchesSha256("a".repeat(5000));
+        // A short token afterwards still hashes correctly through the scratch buffer
+        assertMatchesSha256("short-token");
+    }
+    
+    @Test
+    void nonAsciiTokenIsHashedAsUtf8() throws Exception {
+        assertMatchesSha256("tökén-€");
+    }
+    
+    private static void assertMatchesSha256(String token) throws Exception {
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        assertThat(TokenHasher.sha256(token)).isEqualTo(expected);
+    }
+}